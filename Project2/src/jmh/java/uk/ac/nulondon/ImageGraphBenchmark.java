@@ -0,0 +1,339 @@
+package uk.ac.nulondon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of every hot path of ImageGraph, over the bundled images and generated images from 256x256 to 8K.
+ * Run with the GC profiler (-prof gc, the default in the benchmark profile) to see the allocation rate of each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx8g"})
+public class ImageGraphBenchmark {
+
+    private static final ImageGraph.BlueEnergy BLUE_ENERGY = new ImageGraph.BlueEnergy();
+    private static final ImageGraph.BrightnessEnergy BRIGHTNESS_ENERGY = new ImageGraph.BrightnessEnergy();
+
+    /**
+     * The image to benchmark with: either the name of a bundled image, or the size of a generated one.
+     */
+    @State(Scope.Benchmark)
+    public static class ImageState {
+
+        @Param({"beach.png", "duck.png", "home.png", "snowman.png",
+                "256x256", "1024x1024", "1920x1080", "3840x2160", "7680x4320"})
+        public String image;
+
+        // The number of threads seam searches may use
+        @Param({"1"})
+        public int parallelism;
+
+        BufferedImage bufferedImage;
+
+        @Setup(Level.Trial)
+        public void loadImage() throws IOException {
+            bufferedImage = loadBenchmarkImage(image);
+        }
+
+        /**
+         * Builds a new image graph of the image.
+         * @return The image graph.
+         */
+        ImageGraph newImageGraph() {
+            ImageGraph imageGraph = new ImageGraph(bufferedImage);
+            imageGraph.setParallelism(parallelism);
+            return imageGraph;
+        }
+    }
+
+    /**
+     * An image graph whose energies have already been found, so searches only measure the seam costs.
+     */
+    @State(Scope.Benchmark)
+    public static class GraphState {
+
+        ImageGraph imageGraph;
+
+        @Setup(Level.Trial)
+        public void buildGraph(ImageState imageState) {
+            imageGraph = imageState.newImageGraph();
+            imageGraph.findSeam(BLUE_ENERGY);
+            imageGraph.findSeam(BRIGHTNESS_ENERGY);
+        }
+    }
+
+    /**
+     * An image graph with a seam that is put back in place before every invocation.
+     * The per-invocation setup is not measured, but its timing overhead is noticeable for the smallest images.
+     */
+    @State(Scope.Thread)
+    public static class SeamState {
+
+        ImageGraph imageGraph;
+        ImageGraph.SeamNode seam;
+        boolean removed;
+
+        @Setup(Level.Trial)
+        public void findSeam(ImageState imageState) {
+            imageGraph = imageState.newImageGraph();
+            seam = imageGraph.findSeam(BRIGHTNESS_ENERGY);
+        }
+
+        /**
+         * Puts the seam back in the image if a benchmark removed it.
+         */
+        void restoreSeam() {
+            if (removed) {
+                imageGraph.insertSeam(seam, true);
+                removed = false;
+            }
+        }
+    }
+
+    /**
+     * A seam state where the seam is in the image before every invocation.
+     */
+    @State(Scope.Thread)
+    public static class PresentSeamState extends SeamState {
+
+        @Setup(Level.Invocation)
+        public void putSeamBack() {
+            restoreSeam();
+        }
+    }
+
+    /**
+     * A seam state where the seam has been removed before every invocation.
+     */
+    @State(Scope.Thread)
+    public static class RemovedSeamState extends SeamState {
+
+        @Setup(Level.Invocation)
+        public void takeSeamOut() {
+            if (!removed) {
+                imageGraph.removeSeam(seam);
+                removed = true;
+            }
+        }
+    }
+
+    /**
+     * A fresh image graph for every invocation of a whole carving job.
+     */
+    @State(Scope.Thread)
+    public static class CarveState {
+
+        // The number of seams to remove
+        @Param({"50"})
+        public int seams;
+
+        @Param({"false", "true"})
+        public boolean incremental;
+
+        ImageGraph imageGraph;
+
+        @Setup(Level.Invocation)
+        public void buildGraph(ImageState imageState) {
+            imageGraph = imageState.newImageGraph();
+            imageGraph.setIncrementalSearch(incremental);
+        }
+    }
+
+    /**
+     * A carve index of the image, down to 50 columns narrower, built once for the whole trial.
+     */
+    @State(Scope.Benchmark)
+    public static class CarveIndexState {
+
+        CarveIndex carveIndex;
+
+        @Setup(Level.Trial)
+        public void buildIndex(ImageState imageState) {
+            ImageGraph imageGraph = imageState.newImageGraph();
+            carveIndex = CarveIndex.build(imageGraph, Math.max(1, imageGraph.getWidth() - 50), BRIGHTNESS_ENERGY);
+        }
+    }
+
+    /**
+     * The snapshot whose storage is reused for the next one, like the images ImageHandler gets back from its exporter.
+     */
+    @State(Scope.Thread)
+    public static class SnapshotState {
+
+        BufferedImage snapshot;
+    }
+
+    @Benchmark
+    public ImageGraph construct(ImageState imageState) {
+        return new ImageGraph(imageState.bufferedImage);
+    }
+
+    @Benchmark
+    public ImageGraph.SeamNode findBlueSeam(GraphState graphState) {
+        return graphState.imageGraph.findSeam(BLUE_ENERGY);
+    }
+
+    @Benchmark
+    public ImageGraph.SeamNode findBrightnessSeam(GraphState graphState) {
+        return graphState.imageGraph.findSeam(BRIGHTNESS_ENERGY);
+    }
+
+    @Benchmark
+    public Seam findApproximateSeam(GraphState graphState) {
+        return graphState.imageGraph.findApproximateSeam(BRIGHTNESS_ENERGY, 8);
+    }
+
+    @Benchmark
+    public ImageGraph.SeamNode findRegionSeam(GraphState graphState) {
+        // A tenth of the columns, on the left of the image
+        ImageGraph imageGraph = graphState.imageGraph;
+        return imageGraph.findSeam(BRIGHTNESS_ENERGY, 0, Math.max(1, imageGraph.getWidth() / 10));
+    }
+
+    @Benchmark
+    public List<Seam> findDisjointSeams(GraphState graphState) {
+        return graphState.imageGraph.findSeams(16, BRIGHTNESS_ENERGY, true);
+    }
+
+    @Benchmark
+    public ImageGraph.SeamNode findHorizontalSeam(GraphState graphState) {
+        return graphState.imageGraph.findHorizontalSeam(BRIGHTNESS_ENERGY);
+    }
+
+    @Benchmark
+    public ImageGraph.SeamNode highlightSeam(PresentSeamState seamState) {
+        // Highlighting the same seam again recolors the same pixels, so it doesn't need to be undone
+        return seamState.imageGraph.highlightSeam(seamState.seam, Color.RED);
+    }
+
+    @Benchmark
+    public ImageGraph.SeamNode removeSeam(PresentSeamState seamState) {
+        seamState.removed = true;
+        return seamState.imageGraph.removeSeam(seamState.seam);
+    }
+
+    @Benchmark
+    public ImageGraph.SeamNode insertSeam(RemovedSeamState seamState) {
+        seamState.removed = false;
+        return seamState.imageGraph.insertSeam(seamState.seam, true);
+    }
+
+    @Benchmark
+    public BufferedImage toBufferedImage(GraphState graphState) {
+        return graphState.imageGraph.toBufferedImage();
+    }
+
+    @Benchmark
+    public BufferedImage toReusedBufferedImage(SnapshotState snapshotState, GraphState graphState) {
+        // How ImageHandler takes a snapshot to save in the background
+        snapshotState.snapshot = graphState.imageGraph.toBufferedImage(snapshotState.snapshot);
+        return snapshotState.snapshot;
+    }
+
+    @Benchmark
+    public boolean exportImage(GraphState graphState) throws IOException {
+        // Everything exportImage does except writing the file, which would only measure the disk
+        return ImageIO.write(graphState.imageGraph.asBufferedImage(), "png", OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public ImageGraph removeSeams(CarveState carveState) {
+        ImageGraph imageGraph = carveState.imageGraph;
+        int seams = Math.min(carveState.seams, imageGraph.getWidth() - 1);
+        for (int i = 0; i < seams; i++) {
+            imageGraph.removeSeam(imageGraph.findSeam(BRIGHTNESS_ENERGY));
+        }
+        return imageGraph;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public ImageGraph removeApproximateSeams(CarveState carveState) {
+        // The energy pyramid is built by the first search, and updated by each removal after it
+        ImageGraph imageGraph = carveState.imageGraph;
+        int seams = Math.min(carveState.seams, imageGraph.getWidth() - 1);
+        for (int i = 0; i < seams; i++) {
+            imageGraph.removeSeam(imageGraph.findApproximateSeam(BRIGHTNESS_ENERGY, 8));
+        }
+        return imageGraph;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public SeamBatch removeSeamBatch(CarveState carveState) {
+        ImageGraph imageGraph = carveState.imageGraph;
+        return imageGraph.removeSeams(Math.min(carveState.seams, imageGraph.getWidth() - 1), BRIGHTNESS_ENERGY);
+    }
+
+    @Benchmark
+    public BufferedImage carveFromIndex(SnapshotState snapshotState, CarveIndexState indexState) {
+        // The same image removeSeamBatch produces, from an index that was built before
+        CarveIndex carveIndex = indexState.carveIndex;
+        snapshotState.snapshot = carveIndex.toBufferedImage(carveIndex.getMinimumWidth(), snapshotState.snapshot);
+        return snapshotState.snapshot;
+    }
+
+    /**
+     * Loads an image to benchmark with.
+     * @param image Either the name of an image in the resources, or a size such as 1920x1080 to generate.
+     * @return The image.
+     * @throws IOException If a bundled image can't be read.
+     */
+    static BufferedImage loadBenchmarkImage(String image) throws IOException {
+        if (!image.matches("\\d+x\\d+")) {
+            return ImageIO.read(ImageGraphBenchmark.class.getResource("/" + image));
+        }
+
+        String[] size = image.split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) bufferedImage.getRaster().getDataBuffer()).getData();
+
+        // Smooth gradients with some noise, so seams have real choices to make.
+        // The seed is fixed so every run benchmarks the same pixels.
+        Random random = new Random(image.hashCode());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = (x * 255 / width + random.nextInt(32)) & 0xFF;
+                int green = (y * 255 / height + random.nextInt(32)) & 0xFF;
+                int blue = ((x + y) * 127 / (width + height) + random.nextInt(64)) & 0xFF;
+                data[y * width + x] = (red << 16) | (green << 8) | blue;
+            }
+        }
+        return bufferedImage;
+    }
+}
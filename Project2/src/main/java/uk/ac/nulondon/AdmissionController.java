@@ -0,0 +1,247 @@
+package uk.ac.nulondon;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Lets carving jobs run only while the memory they are estimated to take fits in a heap budget.
+ * A job that doesn't fit waits in a queue until enough running jobs are done. Jobs are let in in the order
+ * they came, so a large job isn't passed over forever by smaller ones. A job that could never fit,
+ * or that comes while the queue is full, is turned away. The queue is full when it holds its most jobs,
+ * or when the memory the waiting jobs already hold, such as their encoded images, would no longer fit
+ * in the budget along with the running jobs.
+ */
+class AdmissionController {
+
+    /**
+     * What happened to a submitted job.
+     */
+    enum Decision {
+        // The job was handed to the executor
+        ADMITTED,
+        // The job waits until enough memory is free
+        QUEUED,
+        // The job would take more than the whole budget
+        TOO_LARGE,
+        // Too many jobs, or too many bytes, are already waiting
+        QUEUE_FULL,
+        // The controller was shut down
+        SHUT_DOWN,
+    }
+
+    /**
+     * A job waiting for memory.
+     * @param footprint The bytes the job is estimated to take.
+     * @param heldBytes The bytes the job holds while it waits.
+     * @param job The job.
+     */
+    private record Waiting(long footprint, long heldBytes, Runnable job) {
+    }
+
+    // The executor admitted jobs run on
+    private final Executor executor;
+
+    // The most bytes the admitted jobs may be estimated to take together
+    private final long budgetBytes;
+
+    // The most jobs that may wait
+    private final int queueCapacity;
+
+    // The jobs waiting for memory, oldest first
+    private final ArrayDeque<Waiting> waiting = new ArrayDeque<>();
+
+    // The bytes the admitted jobs that haven't finished are estimated to take
+    private long reservedBytes;
+
+    // The bytes the waiting jobs hold
+    private long queuedBytes;
+
+    // Whether the controller was shut down, and takes no more jobs
+    private boolean shutDown;
+
+    // The number of jobs admitted and turned away since the controller was created
+    private long admittedCount;
+    private long rejectedCount;
+
+    /**
+     * Creates a new AdmissionController.
+     * @param executor The executor to run admitted jobs on. It must not turn jobs away.
+     * @param budgetBytes The most bytes the admitted jobs may be estimated to take together.
+     * @param queueCapacity The most jobs that may wait for memory.
+     */
+    AdmissionController(Executor executor, long budgetBytes, int queueCapacity) {
+        this.executor = executor;
+        this.budgetBytes = budgetBytes;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Runs a job once the memory it takes fits in the budget. The job holds no memory while it waits.
+     * @param footprint The bytes the job is estimated to take.
+     * @param job The job.
+     * @return Whether the job was admitted, queued or turned away.
+     */
+    Decision submit(long footprint, Runnable job) {
+        return submit(footprint, 0, job);
+    }
+
+    /**
+     * Runs a job once the memory it takes fits in the budget.
+     * @param footprint The bytes the job is estimated to take, including the bytes it holds while it waits.
+     * @param heldBytes The bytes the job already holds, and keeps holding while it waits.
+     * @param job The job.
+     * @return Whether the job was admitted, queued or turned away.
+     */
+    Decision submit(long footprint, long heldBytes, Runnable job) {
+        synchronized (this) {
+            if (shutDown) {
+                return Decision.SHUT_DOWN;
+            }
+            if (footprint > budgetBytes) {
+                rejectedCount++;
+                return Decision.TOO_LARGE;
+            }
+            if (!waiting.isEmpty() || reservedBytes + footprint > budgetBytes) {
+                if (waiting.size() >= queueCapacity || reservedBytes + queuedBytes + heldBytes > budgetBytes) {
+                    rejectedCount++;
+                    return Decision.QUEUE_FULL;
+                }
+                waiting.add(new Waiting(footprint, heldBytes, job));
+                queuedBytes += heldBytes;
+                return Decision.QUEUED;
+            }
+            reserve(footprint);
+        }
+        dispatch(footprint, job);
+        return Decision.ADMITTED;
+    }
+
+    /**
+     * Reserves the memory of a job that is about to be admitted.
+     * @param footprint The bytes the job is estimated to take.
+     */
+    private synchronized void reserve(long footprint) {
+        reservedBytes += footprint;
+        admittedCount++;
+    }
+
+    /**
+     * Hands an admitted job to the executor. The memory is freed once the job is done.
+     * It is called without holding the lock, so an executor that runs jobs straight away can admit more jobs.
+     * @param footprint The bytes the job is estimated to take.
+     * @param job The job.
+     */
+    private void dispatch(long footprint, Runnable job) {
+        try {
+            executor.execute(() -> {
+                try {
+                    job.run();
+                } finally {
+                    release(footprint);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The executor was shut down, so the job will never run
+            synchronized (this) {
+                reservedBytes -= footprint;
+            }
+        }
+    }
+
+    /**
+     * Frees the memory of a finished job, and admits the waiting jobs that fit now, in order.
+     * The jobs are taken off the queue first, and only handed to the executor once the queue isn't being walked.
+     * @param footprint The bytes the job was estimated to take.
+     */
+    private void release(long footprint) {
+        List<Waiting> admitted = new ArrayList<>();
+        synchronized (this) {
+            reservedBytes -= footprint;
+            while (!waiting.isEmpty() && reservedBytes + waiting.peek().footprint() <= budgetBytes) {
+                Waiting next = waiting.poll();
+                queuedBytes -= next.heldBytes();
+                reserve(next.footprint());
+                admitted.add(next);
+            }
+        }
+        for (Waiting next : admitted) {
+            dispatch(next.footprint(), next.job());
+        }
+    }
+
+    /**
+     * Stops taking jobs, and drops the waiting ones. Later submissions are turned away with SHUT_DOWN.
+     * The jobs already handed to the executor are left to it.
+     * @return The number of waiting jobs that were dropped.
+     */
+    synchronized int shutdown() {
+        shutDown = true;
+        int dropped = waiting.size();
+        waiting.clear();
+        queuedBytes = 0;
+        return dropped;
+    }
+
+    /**
+     * Returns the number of jobs waiting for memory.
+     * @return The number of queued jobs.
+     */
+    synchronized int getQueuedCount() {
+        return waiting.size();
+    }
+
+    /**
+     * Returns the number of jobs admitted so far.
+     * @return The number of admitted jobs.
+     */
+    synchronized long getAdmittedCount() {
+        return admittedCount;
+    }
+
+    /**
+     * Returns the number of jobs turned away so far.
+     * @return The number of rejected jobs.
+     */
+    synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Returns the bytes the admitted jobs that haven't finished are estimated to take.
+     * @return The reserved bytes.
+     */
+    synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * Returns the bytes the waiting jobs hold.
+     * @return The queued bytes.
+     */
+    synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * Returns the most bytes the admitted jobs may be estimated to take together.
+     * @return The budget, in bytes.
+     */
+    long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * Estimates how many bytes carving an encoded image takes, from its header. The pixels aren't decoded.
+     * The estimate counts the encoded image, the decoded image, and the ImageGraph.
+     * @param encodedImage The encoded image.
+     * @return The estimated footprint, in bytes.
+     * @throws IOException If the image's format isn't known or its header couldn't be read.
+     */
+    static long estimateFootprint(byte[] encodedImage) throws IOException {
+        return encodedImage.length + ImageProbe.probe(encodedImage).estimateCarvingBytes();
+    }
+}
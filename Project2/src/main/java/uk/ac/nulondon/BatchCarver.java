@@ -0,0 +1,347 @@
+package uk.ac.nulondon;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carves many images without any prompts, several at a time.
+ * Every image is carved to the same width, or has the same number of seams removed, and is written
+ * as a png to an output directory. An image narrower than the width is enlarged by duplicating seams instead.
+ * A line with the timings of each image is printed as soon as it is done,
+ * followed by a summary once all of them are.
+ * <p>
+ * Usage: {@code BatchCarver (--width N | --seams N) [--energy brightness|blue] [--threads N] --output DIR INPUT...}
+ * where each input is an image file or a directory of them.
+ */
+public class BatchCarver {
+
+    /**
+     * What happened to one image.
+     * @param input The image file.
+     * @param output The written file, or null if the image failed.
+     * @param originalWidth The width of the image before carving, or 0 if it couldn't be read.
+     * @param width The width of the image after carving, or 0 if it failed.
+     * @param readMillis How long reading the image took.
+     * @param carveMillis How long carving the image took.
+     * @param writeMillis How long writing the image took.
+     * @param error Why the image failed, or null if it didn't.
+     */
+    public record Result(File input, File output, int originalWidth, int width,
+                         long readMillis, long carveMillis, long writeMillis, String error) {
+
+        /**
+         * Returns whether the image was carved and written.
+         * @return Whether the image was carved and written.
+         */
+        public boolean succeeded() {
+            return error == null;
+        }
+    }
+
+    // The directory the carved images are written to
+    private final File outputDirectory;
+
+    // The width to carve or enlarge every image to, or 0 if a number of seams is removed instead
+    private final int targetWidth;
+
+    // The number of seams to remove from every image, if there is no target width
+    private final int seamCount;
+
+    // The formula to determine the cost of a seam
+    private final ImageGraph.EnergyFormula energyFormula;
+
+    // The number of images carved at once
+    private final int threads;
+
+    /**
+     * Creates a new BatchCarver.
+     * @param outputDirectory The directory to write the carved images to. It is created if it doesn't exist.
+     * @param targetWidth The width to carve or enlarge every image to, or 0 to remove seamCount seams instead.
+     * @param seamCount The number of seams to remove from every image, if targetWidth is 0.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @param threads The number of images to carve at once.
+     */
+    public BatchCarver(File outputDirectory, int targetWidth, int seamCount,
+                       ImageGraph.EnergyFormula energyFormula, int threads) {
+        if (targetWidth < 0 || seamCount < 0 || (targetWidth == 0) == (seamCount == 0)) {
+            throw new IllegalArgumentException("Exactly one of a target width or a seam count must be given");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed");
+        }
+        this.outputDirectory = outputDirectory;
+        this.targetWidth = targetWidth;
+        this.seamCount = seamCount;
+        this.energyFormula = energyFormula;
+        this.threads = threads;
+    }
+
+    /**
+     * Carves every image, a bounded number at a time, and prints a line for each as it is done.
+     * An image that fails doesn't stop the others, but running out of memory does.
+     * @param inputs The image files. No two may be written to the same output file.
+     * @return What happened to each image, in the order they were given.
+     * @throws IOException If the output directory couldn't be created.
+     */
+    public List<Result> carveAll(List<File> inputs) throws IOException {
+        checkOutputNames(inputs);
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Cannot create the output directory " + outputDirectory);
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, inputs.size())));
+        try {
+            CompletionService<Integer> completed = new ExecutorCompletionService<>(workers);
+            Result[] results = new Result[inputs.size()];
+            for (int i = 0; i < inputs.size(); i++) {
+                int index = i;
+                completed.submit(() -> {
+                    results[index] = carve(inputs.get(index));
+                    return index;
+                });
+            }
+
+            for (int done = 1; done <= inputs.size(); done++) {
+                int index = completed.take().get();
+                System.out.println("[" + done + "/" + inputs.size() + "] " + describe(results[index]));
+            }
+            return Arrays.asList(results);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while carving", e);
+        } catch (ExecutionException e) {
+            // carve catches everything an image can fail with, except errors such as running out of memory
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads, carves and writes one image.
+     * @param input The image file.
+     * @return What happened to the image.
+     */
+    private Result carve(File input) {
+        int originalWidth = 0;
+        long readMillis = 0;
+        long carveMillis = 0;
+        try {
+            long start = System.nanoTime();
+            BufferedImage image = ImageIO.read(input);
+            if (image == null) {
+                return new Result(input, null, 0, 0, 0, 0, 0, "Not a readable image");
+            }
+            ImageGraph imageGraph = new ImageGraph(image);
+            // The decoded image isn't needed anymore, so it can be collected while the image is carved
+            image = null;
+            originalWidth = imageGraph.getWidth();
+            long read = System.nanoTime();
+            readMillis = TimeUnit.NANOSECONDS.toMillis(read - start);
+
+            if (targetWidth > originalWidth) {
+                imageGraph.enlargeToWidth(targetWidth, energyFormula);
+            } else if (targetWidth > 0) {
+                imageGraph.carveToWidth(targetWidth, energyFormula);
+            } else {
+                imageGraph.removeSeams(seamCount, energyFormula);
+            }
+            long carved = System.nanoTime();
+            carveMillis = TimeUnit.NANOSECONDS.toMillis(carved - read);
+
+            File output = new File(outputDirectory, outputName(input));
+            ImageExporter.write(imageGraph.asBufferedImage(), output);
+            long writeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - carved);
+            return new Result(input, output, originalWidth, imageGraph.getWidth(),
+                    readMillis, carveMillis, writeMillis, null);
+        } catch (IOException | RuntimeException e) {
+            return new Result(input, null, originalWidth, 0, readMillis, carveMillis, 0,
+                    String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Returns the name of the png a carved image is written to: its own name, with the extension replaced.
+     * @param input The image file.
+     * @return The name of the output file.
+     */
+    static String outputName(File input) {
+        String name = input.getName();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + ".png";
+    }
+
+    /**
+     * Makes sure no two images would be written to the same output file, such as a.jpg and a.png,
+     * or two files named a.png in different directories.
+     * @param inputs The image files.
+     * @throws IllegalArgumentException If two of them have the same output name.
+     */
+    static void checkOutputNames(List<File> inputs) {
+        Map<String, File> written = new HashMap<>();
+        for (File input : inputs) {
+            File other = written.putIfAbsent(outputName(input), input);
+            if (other != null) {
+                throw new IllegalArgumentException(
+                        other + " and " + input + " would both be written to " + outputName(input));
+            }
+        }
+    }
+
+    /**
+     * Returns a line describing what happened to one image.
+     * @param result What happened to the image.
+     * @return The line.
+     */
+    private static String describe(Result result) {
+        if (!result.succeeded()) {
+            return result.input().getName() + " FAILED: " + result.error();
+        }
+        return "%s %d -> %d px: read %d ms, carve %d ms, write %d ms".formatted(result.input().getName(),
+                result.originalWidth(), result.width(), result.readMillis(), result.carveMillis(),
+                result.writeMillis());
+    }
+
+    /**
+     * Returns the image files given on the command line, listing the image files in any directories.
+     * The files of a directory are sorted by name, and files in its subdirectories are left out.
+     * @param paths The files and directories.
+     * @return The image files.
+     * @throws IllegalArgumentException If two of the images would be written to the same output file.
+     */
+    static List<File> collectInputs(List<String> paths) {
+        Set<String> suffixes = Set.of(ImageIO.getReaderFileSuffixes());
+        List<File> inputs = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            File[] children = file.listFiles(child -> child.isFile() && suffixes.contains(suffixOf(child)));
+            if (children == null) {
+                inputs.add(file);
+            } else {
+                Arrays.sort(children);
+                inputs.addAll(Arrays.asList(children));
+            }
+        }
+        checkOutputNames(inputs);
+        return inputs;
+    }
+
+    /**
+     * Returns the lowercase extension of a file name, without its dot.
+     * @param file The file.
+     * @return The extension, or an empty string if there is none.
+     */
+    private static String suffixOf(File file) {
+        String name = file.getName();
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the energy formula with the given name.
+     * @param name Either brightness or blue.
+     * @return The energy formula.
+     */
+    static ImageGraph.EnergyFormula energyFormulaNamed(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "brightness" -> new ImageGraph.BrightnessEnergy();
+            case "blue" -> new ImageGraph.BlueEnergy();
+            default -> throw new IllegalArgumentException("Unknown energy formula " + name);
+        };
+    }
+
+    /**
+     * Prints how to use the program and exits with an error.
+     * @param problem What was wrong with the arguments.
+     */
+    private static void exitWithUsage(String problem) {
+        System.out.println(problem);
+        System.out.println("Usage: BatchCarver (--width N | --seams N) [--energy brightness|blue] [--threads N]"
+                + " --output DIR INPUT...");
+        System.out.println("Each input is an image file or a directory of image files.");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int targetWidth = 0;
+        int seamCount = 0;
+        String energy = "brightness";
+        int threads = Runtime.getRuntime().availableProcessors();
+        String output = null;
+        List<String> paths = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--width" -> {
+                        i++;
+                        targetWidth = Integer.parseInt(args[i]);
+                    }
+                    case "--seams" -> {
+                        i++;
+                        seamCount = Integer.parseInt(args[i]);
+                    }
+                    case "--energy" -> {
+                        i++;
+                        energy = args[i];
+                    }
+                    case "--threads" -> {
+                        i++;
+                        threads = Integer.parseInt(args[i]);
+                    }
+                    case "--output" -> {
+                        i++;
+                        output = args[i];
+                    }
+                    default -> paths.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            exitWithUsage("Every option needs a value, and numbers must be whole numbers.");
+        }
+        if (output == null || paths.isEmpty()) {
+            exitWithUsage("An output directory and at least one input are needed.");
+        }
+
+        BatchCarver carver = null;
+        try {
+            carver = new BatchCarver(new File(output), targetWidth, seamCount, energyFormulaNamed(energy), threads);
+        } catch (IllegalArgumentException e) {
+            exitWithUsage(e.getMessage() + ".");
+        }
+
+        List<File> inputs = null;
+        try {
+            inputs = collectInputs(paths);
+        } catch (IllegalArgumentException e) {
+            exitWithUsage(e.getMessage() + ".");
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = carver.carveAll(inputs);
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        long failed = results.stream().filter(result -> !result.succeeded()).count();
+        long carveMillis = results.stream().mapToLong(Result::carveMillis).sum();
+        System.out.println("Carved " + (results.size() - failed) + " of " + results.size() + " images in "
+                + totalMillis + " ms (" + carveMillis + " ms of carving across " + threads + " threads)");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
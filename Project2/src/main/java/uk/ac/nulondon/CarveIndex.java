@@ -0,0 +1,140 @@
+package uk.ac.nulondon;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * The order in which seam carving removes the pixels of an image, so that the image can be carved to any width
+ * down to a minimum without searching for a single seam.
+ * It is built once by removing seams down to the minimum width, recording for every pixel the step it was removed
+ * at. The image at a given width is then the pixels removed at or after the step that reaches that width,
+ * which a single pass over the pixels picks out, costing about as much as copying the image.
+ * Every width gives the same image as carving the original down to it with carveToWidth.
+ */
+public final class CarveIndex {
+
+    // The step of a pixel that is never removed. Every step of a removed pixel is smaller.
+    private static final short KEPT = Short.MAX_VALUE;
+
+    // Every pixel's color in the original image, packed row by row with no gaps
+    private final int[] colors;
+
+    // The step each pixel was removed at, laid out like the colors, or KEPT if it never was
+    private final short[] removalSteps;
+
+    // The size of the original image, and the narrowest width the index can produce
+    private final int originalWidth;
+    private final int height;
+    private final int minimumWidth;
+
+    /**
+     * Builds a CarveIndex of an image, from which it can be carved to any width down to the given one in a single
+     * pass. The seams are removed from a copy, so the image isn't changed.
+     * @param image The image.
+     * @param minimumWidth The narrowest width the index can produce, from 1 to the current width.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @return The index.
+     */
+    public static CarveIndex build(ImageGraph image, int minimumWidth, ImageGraph.EnergyFormula energyFormula) {
+        // A fresh copy of the image holds its colors packed row by row with no gaps
+        int[] colors = ((DataBufferInt) image.toBufferedImage().getRaster().getDataBuffer()).getData();
+        SeamBatch batch = image.copy(null).carveToWidth(minimumWidth, energyFormula);
+        return new CarveIndex(colors, image.getWidth(), image.getHeight(), batch);
+    }
+
+    /**
+     * Creates a new CarveIndex from the seams removed from an image, in the order they were removed.
+     * @param colors The colors of the original image, packed row by row with no gaps. The index keeps them.
+     * @param width The width of the original image.
+     * @param height The height of the original image.
+     * @param batch The seams removed from the original image.
+     */
+    private CarveIndex(int[] colors, int width, int height, SeamBatch batch) {
+        if (batch.size() >= KEPT) {
+            throw new IllegalArgumentException("A carve index can record at most " + (KEPT - 1) + " seams");
+        }
+        this.colors = colors;
+        this.removalSteps = new short[colors.length];
+        this.originalWidth = width;
+        this.height = height;
+        this.minimumWidth = width - batch.size();
+
+        // The original column of each pixel left in a row, shifted along as the seams are removed
+        int[] originalColumns = new int[width];
+        for (int row = 0; row < height; row++) {
+            int rowStart = row * width;
+            Arrays.fill(removalSteps, rowStart, rowStart + width, KEPT);
+            for (int column = 0; column < width; column++) {
+                originalColumns[column] = column;
+            }
+
+            int rowWidth = width;
+            for (int step = 0; step < batch.size(); step++) {
+                int column = batch.getColumn(step, row);
+                removalSteps[rowStart + originalColumns[column]] = (short) step;
+                System.arraycopy(originalColumns, column + 1, originalColumns, column, rowWidth - column - 1);
+                rowWidth--;
+            }
+        }
+    }
+
+    /**
+     * Returns the width of the original image.
+     * @return The width of the original image, in pixels.
+     */
+    public int getOriginalWidth() {
+        return originalWidth;
+    }
+
+    /**
+     * Returns the narrowest width the index can produce.
+     * @return The minimum width, in pixels.
+     */
+    public int getMinimumWidth() {
+        return minimumWidth;
+    }
+
+    /**
+     * Returns the height of the image.
+     * @return The height of the image, in pixels.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the image carved to the given width.
+     * @param width The width, from the minimum width to the original width.
+     * @return The carved image.
+     */
+    public BufferedImage toBufferedImage(int width) {
+        return toBufferedImage(width, null);
+    }
+
+    /**
+     * Returns the image carved to the given width, reusing the storage of an image that isn't needed anymore
+     * if it is large enough.
+     * @param width The width, from the minimum width to the original width.
+     * @param reusableImage An image whose storage may be reused, or null. It must not be used afterwards.
+     * @return The carved image.
+     */
+    public BufferedImage toBufferedImage(int width, BufferedImage reusableImage) {
+        if (width < minimumWidth || width > originalWidth) {
+            throw new IllegalArgumentException(
+                    "The index can only produce widths from " + minimumWidth + " to " + originalWidth);
+        }
+
+        DataBufferInt dataBuffer = ImageGraph.reusableDataBuffer(reusableImage, width * height);
+        int[] data = dataBuffer.getData();
+        // A pixel is still there after removing this many seams if it was removed at this step or later
+        int removedSeams = originalWidth - width;
+        int to = 0;
+        for (int from = 0; from < colors.length; from++) {
+            if (removalSteps[from] >= removedSeams) {
+                data[to++] = colors[from];
+            }
+        }
+        return ImageGraph.wrapPixels(dataBuffer, width, height, width);
+    }
+}
@@ -0,0 +1,582 @@
+package uk.ac.nulondon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A carving service for other processes on the same machine, so they don't need to start a JVM for every image.
+ * It listens on the loopback address only. Requests are handled on virtual threads, which only read and
+ * write the requests, and the carving itself runs on a fixed pool of CPU threads.
+ * A job is only let onto the CPU threads while the memory it is estimated to take, from the dimensions in
+ * the image's header, fits in a heap budget along with the other jobs. Until then it waits in a bounded queue,
+ * whose images count against the same budget. A body larger than a set size is turned away before it is read.
+ * <p>
+ * The endpoints are:
+ * <ul>
+ *     <li>POST /carve?width=N or ?seams=N, with an optional &amp;energy=brightness|blue and &amp;wait=false.
+ *     The body is the image. The carved png is returned once it is done, or with wait=false,
+ *     202 Accepted with the id of the job straight away.</li>
+ *     <li>GET /jobs/ID returns the carved png of a job once it is done, and 202 Accepted before then.
+ *     A finished job is forgotten once its result is returned, or once it has gone uncollected for a while.</li>
+ *     <li>GET /stats returns the number of queued, in-flight, admitted, completed, failed and rejected jobs,
+ *     and the reserved and budgeted heap bytes, as JSON.</li>
+ * </ul>
+ */
+public class CarvingService {
+
+    /**
+     * A carving job.
+     * @param id The id of the job.
+     * @param result Completes with the carved png once the job is done.
+     * @param started Whether the job has left the queue.
+     * @param finishedAt When the job finished, from System.nanoTime, or 0 while it hasn't.
+     */
+    private record Job(long id, CompletableFuture<byte[]> result, AtomicBoolean started, AtomicLong finishedAt) {
+    }
+
+    // The default port, and the default number of jobs that may wait for memory
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    // The default size of the largest image body that is read
+    public static final int DEFAULT_MAX_BODY_BYTES = 128 * (int) Storage.BYTES_PER_MEGABYTE;
+
+    // How long the result of a job started with wait=false is kept for its client to collect
+    public static final long DEFAULT_RESULT_TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    // How long stop waits for the running jobs to finish before interrupting them
+    private static final long STOP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    // The most jobs started with wait=false that may be kept before they are collected
+    private static final int MAX_UNCOLLECTED_JOBS = 256;
+
+    // The default share of the maximum heap the jobs may be estimated to take, in quarters
+    private static final int DEFAULT_HEAP_BUDGET_QUARTERS = 3;
+
+    // The HTTP server, which handles each request on its own virtual thread
+    private final HttpServer server;
+
+    // The virtual threads that handle the requests
+    private final ExecutorService requestThreads;
+
+    // The CPU threads that carve the images
+    private final ThreadPoolExecutor carvingThreads;
+
+    // Lets jobs onto the CPU threads while their memory fits in the heap budget
+    private final AdmissionController admissionController;
+
+    // The size of the largest image body that is read
+    private final int maxBodyBytes;
+
+    // The jobs started with wait=false that haven't been collected yet, by id
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+
+    // The jobs that haven't finished, by id, so the ones still waiting can be failed when the service stops
+    private final Map<Long, Job> unfinishedJobs = new ConcurrentHashMap<>();
+
+    // How long the result of an uncollected job is kept once it is done, in milliseconds
+    private volatile long resultTimeToLiveMillis = DEFAULT_RESULT_TIME_TO_LIVE_MILLIS;
+
+    // The id of the next job
+    private final AtomicLong nextJobId = new AtomicLong(1);
+
+    // Counts of the jobs being carved, carved, and failed
+    private final AtomicInteger inFlightJobs = new AtomicInteger();
+    private final AtomicLong completedJobs = new AtomicLong();
+    private final AtomicLong failedJobs = new AtomicLong();
+
+    /**
+     * Creates a new CarvingService, whose jobs may take three quarters of the maximum heap.
+     * It doesn't accept requests until it is started.
+     * @param port The port to listen on, on the loopback address, or 0 for any free port.
+     * @param carvingThreadCount The most images carved at once.
+     * @param queueCapacity The number of jobs that may wait for memory. More jobs are turned away.
+     * @throws IOException If the port couldn't be bound.
+     */
+    public CarvingService(int port, int carvingThreadCount, int queueCapacity) throws IOException {
+        this(port, carvingThreadCount, queueCapacity,
+                Runtime.getRuntime().maxMemory() / 4 * DEFAULT_HEAP_BUDGET_QUARTERS);
+    }
+
+    /**
+     * Creates a new CarvingService. It doesn't accept requests until it is started.
+     * @param port The port to listen on, on the loopback address, or 0 for any free port.
+     * @param carvingThreadCount The most images carved at once.
+     * @param queueCapacity The number of jobs that may wait for memory. More jobs are turned away.
+     * @param heapBudget The most bytes the running jobs may be estimated to take together.
+     *                   A job estimated to take more is turned away.
+     * @throws IOException If the port couldn't be bound.
+     */
+    public CarvingService(int port, int carvingThreadCount, int queueCapacity, long heapBudget) throws IOException {
+        this(port, carvingThreadCount, queueCapacity, heapBudget, DEFAULT_MAX_BODY_BYTES);
+    }
+
+    /**
+     * Creates a new CarvingService. It doesn't accept requests until it is started.
+     * @param port The port to listen on, on the loopback address, or 0 for any free port.
+     * @param carvingThreadCount The most images carved at once.
+     * @param queueCapacity The number of jobs that may wait for memory. More jobs are turned away.
+     * @param heapBudget The most bytes the running jobs may be estimated to take together.
+     *                   A job estimated to take more is turned away.
+     * @param maxBodyBytes The size of the largest image body that is read. Larger bodies are turned away.
+     * @throws IOException If the port couldn't be bound.
+     */
+    public CarvingService(int port, int carvingThreadCount, int queueCapacity, long heapBudget, int maxBodyBytes)
+            throws IOException {
+        if (maxBodyBytes < 1 || maxBodyBytes == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cannot read bodies of up to " + maxBodyBytes + " bytes");
+        }
+        this.maxBodyBytes = maxBodyBytes;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        requestThreads = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(requestThreads);
+        carvingThreads = new ThreadPoolExecutor(carvingThreadCount, carvingThreadCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "carver");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        admissionController = new AdmissionController(carvingThreads, heapBudget, queueCapacity);
+
+        server.createContext("/carve", this::handleCarve);
+        server.createContext("/jobs/", this::handleJob);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, and stops carving once the running jobs are done, waiting up to 30 seconds for them.
+     * The jobs that haven't started fail, so no client waits for them forever.
+     */
+    public void stop() {
+        server.stop(0);
+        admissionController.shutdown();
+        // The jobs handed to the CPU threads that haven't started are dropped, and the running ones are let finish
+        carvingThreads.getQueue().clear();
+        carvingThreads.shutdown();
+        for (Job job : unfinishedJobs.values()) {
+            if (!job.started().get()) {
+                job.result().completeExceptionally(new IllegalStateException("The service stopped"));
+            }
+        }
+        try {
+            if (!carvingThreads.awaitTermination(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                carvingThreads.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            carvingThreads.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        requestThreads.shutdown();
+    }
+
+    /**
+     * Sets how long the result of a job started with wait=false is kept once it is done, if it isn't collected.
+     * @param millis The time to keep the result, in milliseconds.
+     */
+    void setResultTimeToLive(long millis) {
+        resultTimeToLiveMillis = millis;
+    }
+
+    /**
+     * Returns the port the service listens on.
+     * @return The port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of jobs waiting for memory or for a CPU thread.
+     * @return The number of queued jobs.
+     */
+    public int getQueuedJobs() {
+        return admissionController.getQueuedCount() + carvingThreads.getQueue().size();
+    }
+
+    /**
+     * Returns the number of jobs being carved.
+     * @return The number of in-flight jobs.
+     */
+    public int getInFlightJobs() {
+        return inFlightJobs.get();
+    }
+
+    /**
+     * Handles POST /carve: queues a carving job for the image in the body.
+     * @param exchange The request.
+     * @throws IOException If the request couldn't be read or answered.
+     */
+    private void handleCarve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, HttpURLConnection.HTTP_BAD_METHOD, "Use POST");
+                return;
+            }
+
+            Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            int targetWidth;
+            int seamCount;
+            ImageGraph.EnergyFormula energyFormula;
+            try {
+                targetWidth = Integer.parseInt(parameters.getOrDefault("width", "0"));
+                seamCount = Integer.parseInt(parameters.getOrDefault("seams", "0"));
+                energyFormula = BatchCarver.energyFormulaNamed(parameters.getOrDefault("energy", "brightness"));
+                if (targetWidth < 0 || seamCount < 0 || (targetWidth == 0) == (seamCount == 0)) {
+                    throw new IllegalArgumentException("Give exactly one of width or seams");
+                }
+            } catch (IllegalArgumentException e) {
+                respond(exchange, HttpURLConnection.HTTP_BAD_REQUEST, e.getMessage());
+                return;
+            }
+            boolean wait = !parameters.getOrDefault("wait", "true").equals("false");
+            if (!wait && !makeRoomForUncollectedJob()) {
+                respond(exchange, HttpURLConnection.HTTP_UNAVAILABLE, "Too many results haven't been collected");
+                return;
+            }
+
+            byte[] imageBytes = readBody(exchange);
+            if (imageBytes == null) {
+                rejectBody(exchange, HttpURLConnection.HTTP_ENTITY_TOO_LARGE,
+                        "The body is larger than " + maxBodyBytes + " bytes");
+                return;
+            }
+            long footprint;
+            try {
+                footprint = AdmissionController.estimateFootprint(imageBytes);
+            } catch (IOException e) {
+                respond(exchange, HttpURLConnection.HTTP_BAD_REQUEST, "The body is not a readable image");
+                return;
+            }
+
+            Job job = new Job(nextJobId.getAndIncrement(), new CompletableFuture<>(), new AtomicBoolean(),
+                    new AtomicLong());
+            unfinishedJobs.put(job.id(), job);
+            job.result().whenComplete((png, failure) -> {
+                job.finishedAt().set(System.nanoTime());
+                unfinishedJobs.remove(job.id());
+            });
+            // The encoded image stays on the heap while the job waits, so it counts against the budget
+            AdmissionController.Decision decision = admissionController.submit(footprint, imageBytes.length,
+                    () -> runJob(job, imageBytes, targetWidth, seamCount, energyFormula));
+            if (decision == AdmissionController.Decision.TOO_LARGE) {
+                unfinishedJobs.remove(job.id());
+                respond(exchange, HttpURLConnection.HTTP_ENTITY_TOO_LARGE, "The image needs about "
+                        + footprint / Storage.BYTES_PER_MEGABYTE + " MB to carve, more than the service may use");
+                return;
+            } else if (decision == AdmissionController.Decision.QUEUE_FULL) {
+                unfinishedJobs.remove(job.id());
+                respond(exchange, HttpURLConnection.HTTP_UNAVAILABLE, "The queue is full, try again later");
+                return;
+            } else if (decision == AdmissionController.Decision.SHUT_DOWN) {
+                unfinishedJobs.remove(job.id());
+                respond(exchange, HttpURLConnection.HTTP_UNAVAILABLE, "The service is stopping");
+                return;
+            }
+
+            if (wait) {
+                respondWithResult(exchange, job);
+            } else {
+                jobs.put(job.id(), job);
+                exchange.getResponseHeaders().set("Location", "/jobs/" + job.id());
+                respondJson(exchange, HttpURLConnection.HTTP_ACCEPTED, "{\"id\": " + job.id() + "}");
+            }
+        }
+    }
+
+    /**
+     * Reads the body of a request, unless it is larger than the largest body the service reads.
+     * A body whose Content-Length says it is too large isn't read at all, and any other body is read
+     * only up to one byte past the limit.
+     * @param exchange The request.
+     * @return The body, or null if it is too large.
+     * @throws IOException If the body couldn't be read.
+     */
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        try {
+            if (contentLength != null && Long.parseLong(contentLength) > maxBodyBytes) {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            // A malformed length is left to the read below
+        }
+        byte[] body = exchange.getRequestBody().readNBytes(maxBodyBytes + 1);
+        return body.length > maxBodyBytes ? null : body;
+    }
+
+    /**
+     * Forgets the uncollected jobs whose results have been kept for their whole time to live,
+     * and, if there are still too many uncollected jobs, the ones that finished first.
+     * @return Whether there is room for another uncollected job.
+     */
+    private boolean makeRoomForUncollectedJob() {
+        long now = System.nanoTime();
+        long timeToLive = TimeUnit.MILLISECONDS.toNanos(resultTimeToLiveMillis);
+        jobs.values().removeIf(job -> job.finishedAt().get() != 0 && now - job.finishedAt().get() >= timeToLive);
+        while (jobs.size() >= MAX_UNCOLLECTED_JOBS) {
+            Job oldest = null;
+            for (Job job : jobs.values()) {
+                long finishedAt = job.finishedAt().get();
+                if (finishedAt != 0 && (oldest == null || finishedAt - oldest.finishedAt().get() < 0)) {
+                    oldest = job;
+                }
+            }
+            if (oldest == null) {
+                return false;
+            }
+            jobs.remove(oldest.id());
+        }
+        return true;
+    }
+
+    /**
+     * Handles GET /jobs/ID: returns the result of a job once it is done.
+     * @param exchange The request.
+     * @throws IOException If the request couldn't be answered.
+     */
+    private void handleJob(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            makeRoomForUncollectedJob();
+            Job job;
+            try {
+                job = jobs.get(Long.parseLong(exchange.getRequestURI().getPath().substring("/jobs/".length())));
+            } catch (NumberFormatException e) {
+                job = null;
+            }
+            if (job == null) {
+                respond(exchange, HttpURLConnection.HTTP_NOT_FOUND, "There is no such job");
+            } else if (!job.result().isDone()) {
+                respondJson(exchange, HttpURLConnection.HTTP_ACCEPTED, "{\"id\": " + job.id() + ", \"status\": \""
+                        + (job.started().get() ? "running" : "queued") + "\"}");
+            } else {
+                jobs.remove(job.id());
+                respondWithResult(exchange, job);
+            }
+        }
+    }
+
+    /**
+     * Handles GET /stats: returns the counts of the jobs.
+     * @param exchange The request.
+     * @throws IOException If the request couldn't be answered.
+     */
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            respondJson(exchange, HttpURLConnection.HTTP_OK, ("{\"queued\": %d, \"inFlight\": %d, \"admitted\": %d,"
+                    + " \"completed\": %d, \"failed\": %d, \"rejected\": %d, \"reservedBytes\": %d,"
+                    + " \"queuedBytes\": %d, \"budgetBytes\": %d, \"uncollected\": %d}").formatted(
+                    getQueuedJobs(), getInFlightJobs(), admissionController.getAdmittedCount(), completedJobs.get(),
+                    failedJobs.get(), admissionController.getRejectedCount(), admissionController.getReservedBytes(),
+                    admissionController.getQueuedBytes(), admissionController.getBudgetBytes(), jobs.size()));
+        }
+    }
+
+    /**
+     * Carves the image of a job. Runs on a CPU thread.
+     * @param job The job.
+     * @param imageBytes The encoded image.
+     * @param targetWidth The width to carve the image to, or 0 to remove seamCount seams instead.
+     * @param seamCount The number of seams to remove, if targetWidth is 0.
+     * @param energyFormula The formula to determine the cost of a seam.
+     */
+    private void runJob(Job job, byte[] imageBytes, int targetWidth, int seamCount,
+                        ImageGraph.EnergyFormula energyFormula) {
+        job.started().set(true);
+        inFlightJobs.incrementAndGet();
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+            if (image == null) {
+                throw new IllegalArgumentException("The body is not a readable image");
+            }
+            ImageGraph imageGraph = new ImageGraph(image);
+            if (targetWidth > 0) {
+                imageGraph.carveToWidth(targetWidth, energyFormula);
+            } else {
+                imageGraph.removeSeams(seamCount, energyFormula);
+            }
+
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(imageGraph.asBufferedImage(), "png", png);
+            // Counted once the job is complete, so anyone who sees the count also sees the job finished
+            job.result().complete(png.toByteArray());
+            completedJobs.incrementAndGet();
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            job.result().completeExceptionally(e);
+            failedJobs.incrementAndGet();
+        } finally {
+            inFlightJobs.decrementAndGet();
+        }
+    }
+
+    /**
+     * Waits for a job and responds with the carved png, or with why it failed.
+     * @param exchange The request.
+     * @param job The job.
+     * @throws IOException If the request couldn't be answered.
+     */
+    private static void respondWithResult(HttpExchange exchange, Job job) throws IOException {
+        byte[] png;
+        try {
+            png = job.result().get();
+        } catch (ExecutionException e) {
+            int status = e.getCause() instanceof IllegalArgumentException
+                    ? HttpURLConnection.HTTP_BAD_REQUEST : HttpURLConnection.HTTP_INTERNAL_ERROR;
+            respond(exchange, status, String.valueOf(e.getCause().getMessage()));
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, HttpURLConnection.HTTP_UNAVAILABLE, "The service is stopping");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "image/png");
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, png.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(png);
+        }
+    }
+
+    /**
+     * Responds with a line of plain text.
+     * @param exchange The request.
+     * @param status The status code.
+     * @param message The text.
+     * @throws IOException If the request couldn't be answered.
+     */
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        send(exchange, status, (message + "\n").getBytes(StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * Responds with a line of plain text without reading the rest of the request's body, and closes the connection.
+     * @param exchange The request.
+     * @param status The status code.
+     * @param message The text.
+     * @throws IOException If the request couldn't be answered.
+     */
+    private static void rejectBody(HttpExchange exchange, int status, String message) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.getResponseHeaders().set("Connection", "close");
+        send(exchange, status, (message + "\n").getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    /**
+     * Responds with JSON.
+     * @param exchange The request.
+     * @param status The status code.
+     * @param json The JSON.
+     * @throws IOException If the request couldn't be answered.
+     */
+    private static void respondJson(HttpExchange exchange, int status, String json) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        send(exchange, status, json.getBytes(StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * Sends a response and its body.
+     * @param exchange The request.
+     * @param status The status code.
+     * @param body The body.
+     * @param drainRequest Whether to read the rest of the request's body first, so the connection can be reused.
+     * @throws IOException If the request couldn't be answered.
+     */
+    private static void send(HttpExchange exchange, int status, byte[] body, boolean drainRequest)
+            throws IOException {
+        if (drainRequest) {
+            try (InputStream requestBody = exchange.getRequestBody()) {
+                requestBody.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    /**
+     * Returns the parameters of a query string.
+     * @param rawQuery The query string, still encoded, or null if there is none.
+     * @return The parameters, by name.
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        long heapBudget = Runtime.getRuntime().maxMemory() / 4 * DEFAULT_HEAP_BUDGET_QUARTERS;
+        int maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--port" -> {
+                    port = Integer.parseInt(value);
+                }
+                case "--threads" -> {
+                    threads = Integer.parseInt(value);
+                }
+                case "--queue" -> {
+                    queueCapacity = Integer.parseInt(value);
+                }
+                case "--heap-budget-mb" -> {
+                    heapBudget = Long.parseLong(value) * Storage.BYTES_PER_MEGABYTE;
+                }
+                case "--max-body-mb" -> {
+                    maxBodyBytes = Math.toIntExact(Long.parseLong(value) * Storage.BYTES_PER_MEGABYTE);
+                }
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        CarvingService service = new CarvingService(port, threads, queueCapacity, heapBudget, maxBodyBytes);
+        service.start();
+        System.out.println("Carving on http://localhost:" + service.getPort() + " with " + threads + " threads and "
+                + heapBudget / Storage.BYTES_PER_MEGABYTE + " MB of heap");
+    }
+}
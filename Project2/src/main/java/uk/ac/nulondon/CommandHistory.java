@@ -0,0 +1,271 @@
+package uk.ac.nulondon;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.List;
+
+/**
+ * A stack of edits that keeps its memory use within a budget.
+ * The newest edits are kept in memory. When they take more than the budget, the payloads of the oldest ones
+ * are written to a spill file and dropped from memory, and they are read back when they are popped again.
+ * Edits are only ever popped from the top, so the spill file is itself used as a stack.
+ * @param <E> The type of the edits.
+ */
+class CommandHistory<E extends CommandHistory.Entry> implements AutoCloseable {
+
+    /**
+     * An edit that can drop its payload from memory, and get it back from the spill file.
+     */
+    interface Entry {
+        /**
+         * Returns roughly how many bytes the payload of the edit takes on the heap.
+         * @return The size of the payload, in bytes.
+         */
+        long memoryBytes();
+
+        /**
+         * Writes the payload of the edit.
+         * @param out Where to write the payload.
+         * @throws IOException If the payload couldn't be written.
+         */
+        void writeTo(DataOutput out) throws IOException;
+
+        /**
+         * Drops the payload of the edit from memory, once it was written.
+         */
+        void release();
+
+        /**
+         * Reads back the payload written by writeTo.
+         * @param in Where to read the payload from.
+         * @throws IOException If the payload couldn't be read.
+         */
+        void readFrom(DataInput in) throws IOException;
+    }
+
+    // How many spilled edits there is room for the offsets of, before the room is grown
+    private static final int INITIAL_SPILL_CAPACITY = 16;
+
+    // The edits, oldest first
+    private final List<E> entries = new ArrayList<>();
+
+    // Where the payload of each spilled edit starts in the spill file, in the same order as the edits
+    private long[] spillOffsets = new long[INITIAL_SPILL_CAPACITY];
+
+    // The number of spilled edits. They are always the oldest ones.
+    private int spilledCount;
+
+    // The end of the payloads in the spill file
+    private long spillEnd;
+
+    // The spill file, or null until the first edit is spilled
+    private RandomAccessFile spillFile;
+
+    // Where the spill file is
+    private Path spillPath;
+
+    // Whether spilling failed, after which every edit is kept in memory
+    private boolean spillFailed;
+
+    // The most bytes the payloads of the edits in memory should take
+    private final long memoryBudget;
+
+    // How many bytes the payloads of the edits in memory take
+    private long memoryBytes;
+
+    /**
+     * Creates a new, empty CommandHistory.
+     * @param memoryBudget The most bytes the edits in memory should take. The newest edit is always kept in memory.
+     */
+    CommandHistory(long memoryBudget) {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("The memory budget can't be negative");
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Adds an edit to the top of the history, spilling the oldest edits in memory if they take too much.
+     * @param entry The edit.
+     */
+    void push(E entry) {
+        entries.add(entry);
+        memoryBytes += entry.memoryBytes();
+        while (memoryBytes > memoryBudget && spilledCount < entries.size() - 1 && !spillFailed) {
+            spillOldest();
+        }
+    }
+
+    /**
+     * Removes the edit at the top of the history.
+     * If the edit under it was spilled, it is read back from the spill file, so the top edit is always in memory.
+     * @return The edit.
+     * @throws EmptyStackException If the history is empty.
+     * @throws UncheckedIOException If the edit under it couldn't be read back.
+     */
+    E pop() {
+        E entry = peek();
+        entries.remove(entries.size() - 1);
+        memoryBytes -= entry.memoryBytes();
+        if (!entries.isEmpty() && entries.size() == spilledCount) {
+            spilledCount--;
+            E top = entries.get(spilledCount);
+            load(top, spillOffsets[spilledCount]);
+            memoryBytes += top.memoryBytes();
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the edit at the top of the history, which is always in memory.
+     * @return The edit.
+     * @throws EmptyStackException If the history is empty.
+     */
+    E peek() {
+        if (entries.isEmpty()) {
+            throw new EmptyStackException();
+        }
+        return entries.get(entries.size() - 1);
+    }
+
+    /**
+     * Removes every edit from the history, and deletes the spill file. A new one is made if edits are spilled again.
+     */
+    void clear() {
+        entries.clear();
+        spilledCount = 0;
+        spillEnd = 0;
+        memoryBytes = 0;
+        try {
+            close();
+        } catch (IOException e) {
+            System.out.println("Failed to delete the spilled edit history from the disk");
+        }
+    }
+
+    /**
+     * Returns the number of edits in the history.
+     * @return The number of edits in the history.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns whether the history is empty.
+     * @return Whether the history is empty.
+     */
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Returns the number of edits whose payloads are in the spill file.
+     * @return The number of spilled edits.
+     */
+    int spilledCount() {
+        return spilledCount;
+    }
+
+    /**
+     * Returns how many bytes the payloads of the edits in memory take.
+     * @return The size of the edits in memory, in bytes.
+     */
+    long memoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Returns where the spill file is.
+     * @return The path of the spill file, or null if there is none.
+     */
+    Path spillPath() {
+        return spillFile == null ? null : spillPath;
+    }
+
+    /**
+     * Writes the payload of the oldest edit in memory to the end of the spill file, and drops it from memory.
+     * If that fails, spilling stops and the edits stay in memory.
+     */
+    private void spillOldest() {
+        E entry = entries.get(spilledCount);
+        byte[] payload;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            entry.writeTo(new DataOutputStream(bytes));
+            payload = bytes.toByteArray();
+            RandomAccessFile file = spillFile();
+            file.seek(spillEnd);
+            file.write(payload);
+        } catch (IOException e) {
+            System.out.println("Failed to spill the edit history to the disk, keeping it in memory");
+            spillFailed = true;
+            return;
+        }
+
+        if (spilledCount == spillOffsets.length) {
+            spillOffsets = Arrays.copyOf(spillOffsets, spilledCount * 2);
+        }
+        spillOffsets[spilledCount++] = spillEnd;
+        spillEnd += payload.length;
+        memoryBytes -= entry.memoryBytes();
+        entry.release();
+    }
+
+    /**
+     * Reads the payload of a spilled edit back from the spill file. It is the last payload in the file,
+     * so the file is cut back to where it started.
+     * @param entry The edit.
+     * @param offset Where its payload starts in the spill file.
+     */
+    private void load(E entry, long offset) {
+        try {
+            byte[] bytes = new byte[Math.toIntExact(spillEnd - offset)];
+            spillFile.seek(offset);
+            spillFile.readFully(bytes);
+            entry.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the edit history back from the disk", e);
+        }
+        spillEnd = offset;
+    }
+
+    /**
+     * Returns the spill file, creating it if it doesn't exist yet.
+     * @return The spill file.
+     * @throws IOException If the file couldn't be created.
+     */
+    private RandomAccessFile spillFile() throws IOException {
+        if (spillFile == null) {
+            spillPath = Files.createTempFile("edit-history", ".spill");
+            spillPath.toFile().deleteOnExit();
+            spillFile = new RandomAccessFile(spillPath.toFile(), "rw");
+        }
+        return spillFile;
+    }
+
+    /**
+     * Deletes the spill file. The spilled edits can't be read back afterwards.
+     * @throws IOException If the file couldn't be closed or deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (spillFile != null) {
+            spillFile.close();
+            Files.deleteIfExists(spillPath);
+            spillFile = null;
+        }
+    }
+}
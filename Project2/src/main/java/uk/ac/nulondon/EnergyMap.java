@@ -0,0 +1,403 @@
+package uk.ac.nulondon;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A cache of the energy of every pixel in the image, as found by one energy formula.
+ * It is kept up to date as the image is edited by only recomputing the pixels whose neighborhoods changed.
+ * <p>
+ * For incremental searches it also keeps the cheapest cost of a seam ending at every pixel,
+ * along with the columns of each row that edits could have changed since those costs were found.
+ */
+final class EnergyMap {
+
+    // The image the energies are of
+    private final ImageGraph image;
+
+    // The formula that found these energies
+    private final ImageGraph.EnergyFormula energyFormula;
+
+    // The energy of every pixel, laid out the same way as the pixels of the image. A float is plenty for an energy,
+    // and takes half the memory of a double.
+    private final float[] energies;
+
+    // The cheapest cost of a seam ending at every pixel, and the relationship of that seam with the
+    // pixel above, laid out like the pixels. Null until the first incremental search.
+    private float[] seamCosts;
+    private byte[] relationships;
+
+    // The first and last column of each row whose seam cost could have changed since it was found.
+    // A row with nothing to recompute has a first column after its last column.
+    private int[] firstDirtyColumns;
+    private int[] lastDirtyColumns;
+
+    // The energies averaged into smaller levels for approximate searches. Null until the first one,
+    // and let go whenever a horizontal seam is edited.
+    private EnergyPyramid pyramid;
+
+    /**
+     * Creates a new EnergyMap, finding the energy of every pixel in the image.
+     * @param image The image to find the energies of.
+     * @param energyFormula The formula to find the energies with.
+     */
+    EnergyMap(ImageGraph image, ImageGraph.EnergyFormula energyFormula) {
+        this.image = image;
+        this.energyFormula = energyFormula;
+        this.energies = new float[image.getPixelCapacity()];
+
+        ForkJoinPool searchPool = image.getSearchPool();
+        if (searchPool != null) {
+            searchPool.invoke(new EnergyRows(0, image.getHeight()));
+        } else {
+            findEnergies(0, image.getHeight());
+        }
+    }
+
+    /**
+     * Finds the energy of every pixel in a block of rows.
+     * @param firstRow The first row of the block.
+     * @param endRow The row after the last row of the block.
+     */
+    private void findEnergies(int firstRow, int endRow) {
+        energyFormula.energyRows(image, firstRow, endRow, energies, image.getStride());
+    }
+
+    /**
+     * A block of rows whose energies are found on the search pool. Blocks bigger than
+     * ImageGraph.PARALLEL_CHUNK_PIXELS are split in half, and both halves are found at the same time.
+     */
+    private final class EnergyRows extends RecursiveAction {
+
+        private final int firstRow;
+        private final int endRow;
+
+        /**
+         * Creates a new block of rows.
+         * @param firstRow The first row of the block.
+         * @param endRow The row after the last row of the block.
+         */
+        EnergyRows(int firstRow, int endRow) {
+            this.firstRow = firstRow;
+            this.endRow = endRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (endRow - firstRow < 2
+                    || (long) (endRow - firstRow) * image.getWidth() <= ImageGraph.PARALLEL_CHUNK_PIXELS) {
+                findEnergies(firstRow, endRow);
+            } else {
+                int middleRow = (firstRow + endRow) >>> 1;
+                invokeAll(new EnergyRows(firstRow, middleRow), new EnergyRows(middleRow, endRow));
+            }
+        }
+    }
+
+    /**
+     * Returns the energy pyramid of the map, building it if there is none yet
+     * or the image has changed size too much for the one kept.
+     * @return The energy pyramid.
+     */
+    EnergyPyramid getPyramid() {
+        if (pyramid == null || !pyramid.fits(image.getWidth(), image.getHeight())) {
+            pyramid = new EnergyPyramid(energies, image.getStride(), image.getWidth(), image.getHeight());
+        }
+        return pyramid;
+    }
+
+    /**
+     * Returns the energy of every pixel, laid out the same way as the pixels of the image.
+     * @return The map's own array of energies.
+     */
+    float[] getEnergies() {
+        return energies;
+    }
+
+    /**
+     * Returns the cheapest cost of a seam ending at every pixel, laid out like the pixels.
+     * @return The map's own array of costs, or null if it keeps none.
+     */
+    float[] getSeamCosts() {
+        return seamCosts;
+    }
+
+    /**
+     * Returns the relationship of the cheapest seam ending at every pixel with the pixel above, by ordinal.
+     * @return The map's own array of relationships, or null if it keeps no seam costs.
+     */
+    byte[] getRelationships() {
+        return relationships;
+    }
+
+    /**
+     * Finds the lowest energy vertical seam, using the seam costs kept by the map and bringing them up
+     * to date. Only the costs that edits since the last search could have changed are found again: the pixels
+     * marked by the edits, and the pixels below any pixel whose cost turned out different, which spread out in
+     * a cone. If that would mean finding the costs of more than half of the image, the rest of the costs are all
+     * found again instead, without checking what changed.
+     * @return The column of the last row where the cheapest seam ends.
+     */
+    int updateSeamCosts() {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int stride = image.getStride();
+
+        // Until the first search, every cost has to be found
+        boolean rebuilding = seamCosts == null;
+        if (rebuilding) {
+            seamCosts = new float[image.getPixelCapacity()];
+            relationships = new byte[image.getPixelCapacity()];
+            firstDirtyColumns = new int[height];
+            lastDirtyColumns = new int[height];
+        }
+        float[] costs = seamCosts;
+
+        // The number of costs that may be found before giving up on finding only the changed ones
+        long budget = (long) width * height / 2;
+
+        // The first and last column whose cost changed in the previous row. Empty before the first row.
+        int firstChanged = Integer.MAX_VALUE;
+        int lastChanged = -1;
+
+        for (int row = 0; row < height; row++) {
+            int rowStart = row * stride;
+
+            // The columns that have to be found again: the ones marked by edits,
+            // and the ones below a changed cost in the row above
+            int firstCol = firstDirtyColumns[row];
+            int lastCol = lastDirtyColumns[row];
+            if (lastChanged >= 0) {
+                firstCol = Math.min(firstCol, firstChanged - 1);
+                lastCol = Math.max(lastCol, lastChanged + 1);
+            }
+            firstCol = Math.max(firstCol, 0);
+            lastCol = Math.min(lastCol, width - 1);
+
+            if (!rebuilding && lastCol - firstCol + 1 > budget) {
+                rebuilding = true;
+            }
+            if (rebuilding) {
+                firstCol = 0;
+                lastCol = width - 1;
+            } else {
+                budget -= Math.max(lastCol - firstCol + 1, 0);
+            }
+
+            firstChanged = Integer.MAX_VALUE;
+            lastChanged = -1;
+            for (int col = firstCol; col <= lastCol; col++) {
+                // The currently best seam to reach the pixel. The one right above the current node by default.
+                float bestValue = 0;
+                ImageGraph.SeamNode.PreviousSeamRelationship relationship =
+                        ImageGraph.SeamNode.PreviousSeamRelationship.STRAIGHT_UP;
+
+                if (row > 0) {
+                    int aboveIndex = rowStart - stride + col;
+                    bestValue = costs[aboveIndex];
+
+                    // Check if the top left and top right have better seams
+                    if (col > 0 && costs[aboveIndex - 1] < bestValue) {
+                        bestValue = costs[aboveIndex - 1];
+                        relationship = ImageGraph.SeamNode.PreviousSeamRelationship.DIAGONAL_LEFT;
+                    }
+                    if (col < width - 1 && costs[aboveIndex + 1] < bestValue) {
+                        bestValue = costs[aboveIndex + 1];
+                        relationship = ImageGraph.SeamNode.PreviousSeamRelationship.DIAGONAL_RIGHT;
+                    }
+                }
+
+                float cost = row > 0 ? energies[rowStart + col] + bestValue : energies[rowStart + col];
+                if (cost != costs[rowStart + col]) {
+                    firstChanged = Math.min(firstChanged, col);
+                    lastChanged = col;
+                }
+                costs[rowStart + col] = cost;
+                relationships[rowStart + col] = (byte) relationship.ordinal();
+            }
+
+            // Everything in this row is up to date now
+            firstDirtyColumns[row] = Integer.MAX_VALUE;
+            lastDirtyColumns[row] = -1;
+        }
+
+        // The best seam ends at the first pixel with the lowest cost in the last row
+        int lastRowStart = (height - 1) * stride;
+        int bestColumn = 0;
+        for (int col = 1; col < width; col++) {
+            if (costs[lastRowStart + col] < costs[lastRowStart + bestColumn]) {
+                bestColumn = col;
+            }
+        }
+        return bestColumn;
+    }
+
+    /**
+     * Lets go of the seam costs kept for incremental searches. They are found again by the next one.
+     */
+    void releaseSeamCosts() {
+        seamCosts = null;
+        relationships = null;
+        firstDirtyColumns = null;
+        lastDirtyColumns = null;
+    }
+
+    /**
+     * Updates the map after a seam was removed from the image, and the width (or height) was reduced.
+     * Removing a horizontal seam shifts every seam cost below it, so the kept seam costs are let go.
+     * @param columns The position the removed seam crossed each line at.
+     * @param direction The direction of the removed seam.
+     */
+    void removeSeam(int[] columns, ImageGraph.Direction direction) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int stride = image.getStride();
+        if (direction == ImageGraph.Direction.HORIZONTAL) {
+            int firstRow = ImageGraph.minimum(columns, width);
+            for (int row = firstRow; row < height; row++) {
+                int rowStart = row * stride;
+                for (int col = 0; col < width; col++) {
+                    if (row >= columns[col]) {
+                        energies[rowStart + col] = energies[rowStart + stride + col];
+                    }
+                }
+            }
+            releaseSeamCosts();
+            pyramid = null;
+            refreshEnergies(columns, direction);
+            return;
+        }
+
+        for (int row = 0; row < height; row++) {
+            int index = row * stride + columns[row];
+            int length = width - columns[row];
+            System.arraycopy(energies, index + 1, energies, index, length);
+
+            if (seamCosts != null) {
+                System.arraycopy(seamCosts, index + 1, seamCosts, index, length);
+                System.arraycopy(relationships, index + 1, relationships, index, length);
+
+                // Columns right of the seam moved one to the left
+                if (firstDirtyColumns[row] <= lastDirtyColumns[row]) {
+                    if (firstDirtyColumns[row] > columns[row]) {
+                        firstDirtyColumns[row]--;
+                    }
+                    if (lastDirtyColumns[row] > columns[row]) {
+                        lastDirtyColumns[row]--;
+                    }
+                }
+            }
+        }
+        refreshEnergies(columns, direction);
+        if (pyramid != null) {
+            pyramid.removeSeam(columns, width);
+        }
+    }
+
+    /**
+     * Updates the map after a seam was inserted into the image, and the width (or height) was increased.
+     * Inserting a horizontal seam shifts every seam cost below it, so the kept seam costs are let go.
+     * @param columns The position the inserted seam crosses each line at.
+     * @param direction The direction of the inserted seam.
+     */
+    void insertSeam(int[] columns, ImageGraph.Direction direction) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int stride = image.getStride();
+        if (direction == ImageGraph.Direction.HORIZONTAL) {
+            int firstRow = ImageGraph.minimum(columns, width);
+            for (int row = height - 1; row > firstRow; row--) {
+                int rowStart = row * stride;
+                for (int col = 0; col < width; col++) {
+                    if (row > columns[col]) {
+                        energies[rowStart + col] = energies[rowStart - stride + col];
+                    }
+                }
+            }
+            releaseSeamCosts();
+            pyramid = null;
+            refreshEnergies(columns, direction);
+            return;
+        }
+
+        for (int row = 0; row < height; row++) {
+            int index = row * stride + columns[row];
+            int length = width - 1 - columns[row];
+            System.arraycopy(energies, index, energies, index + 1, length);
+
+            if (seamCosts != null) {
+                System.arraycopy(seamCosts, index, seamCosts, index + 1, length);
+                System.arraycopy(relationships, index, relationships, index + 1, length);
+
+                // Columns from the seam onwards moved one to the right
+                if (firstDirtyColumns[row] <= lastDirtyColumns[row]) {
+                    if (firstDirtyColumns[row] >= columns[row]) {
+                        firstDirtyColumns[row]++;
+                    }
+                    if (lastDirtyColumns[row] >= columns[row]) {
+                        lastDirtyColumns[row]++;
+                    }
+                }
+            }
+        }
+        refreshEnergies(columns, direction);
+        if (pyramid != null) {
+            pyramid.insertSeam(columns, width);
+        }
+    }
+
+    /**
+     * Updates the map after the pixels of a seam were recolored, without changing the size of the image.
+     * @param columns The position the edited seam crosses each line at.
+     * @param direction The direction of the edited seam.
+     */
+    void refresh(int[] columns, ImageGraph.Direction direction) {
+        refreshEnergies(columns, direction);
+        if (direction == ImageGraph.Direction.HORIZONTAL) {
+            pyramid = null;
+        } else if (pyramid != null) {
+            pyramid.refresh(columns);
+        }
+    }
+
+    /**
+     * Recomputes the energy of every pixel whose neighborhood could have been changed by an edit of a seam.
+     * A pixel's energy can depend on the pixels around it, so in each line this is every pixel within one
+     * position of where the seam crosses that line or the lines before and after it.
+     * This range also holds every pixel whose upper neighbors changed, so it is marked for the next
+     * incremental search.
+     * @param columns The position the edited seam crosses each line at.
+     * @param direction The direction of the edited seam.
+     */
+    private void refreshEnergies(int[] columns, ImageGraph.Direction direction) {
+        int lineCount = image.lineCount(direction);
+        int lastPosition = image.lineLength(direction) - 1;
+        boolean vertical = direction == ImageGraph.Direction.VERTICAL;
+
+        for (int line = 0; line < lineCount; line++) {
+            int before = columns[Math.max(line - 1, 0)];
+            int after = columns[Math.min(line + 1, lineCount - 1)];
+            int firstCol = Math.max(Math.min(columns[line], Math.min(before, after)) - 1, 0);
+            int lastCol = Math.min(Math.max(columns[line], Math.max(before, after)) + 1, lastPosition);
+
+            for (int col = firstCol; col <= lastCol; col++) {
+                energies[image.indexOf(line, col, direction)] = (float) (vertical
+                        ? energyFormula.energyFormula(image, col, line)
+                        : energyFormula.energyFormula(image, line, col));
+            }
+
+            if (seamCosts != null) {
+                if (vertical) {
+                    firstDirtyColumns[line] = Math.min(firstDirtyColumns[line], firstCol);
+                    lastDirtyColumns[line] = Math.max(lastDirtyColumns[line], lastCol);
+                } else {
+                    // The line is a column, and each row it changed has to include it
+                    for (int row = firstCol; row <= lastCol; row++) {
+                        firstDirtyColumns[row] = Math.min(firstDirtyColumns[row], line);
+                        lastDirtyColumns[row] = Math.max(lastDirtyColumns[row], line);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package uk.ac.nulondon;
+
+/**
+ * The energies of an image averaged into a pyramid of smaller and smaller levels, for approximate seam searches.
+ * Level 0 is the energies themselves, as kept by an energy map. Every level after it averages each block of 2 by 2
+ * energies of the level before into one, down to a level narrow enough to search all of.
+ * <p>
+ * Like the energy map, the pyramid is kept up to date as vertical seams are removed, inserted or recolored,
+ * without building it again. In every level only the averages around the seam are found again, and a level drops
+ * (or gains) a column at the seam whenever the level before it has become too narrow (or too wide) for it.
+ * The averages farther from the seam are left as they were, so a coarser level can be off by about one column
+ * from what building the pyramid again would give. That only moves where the finer levels look for the seam,
+ * and level 0 is always searched exactly.
+ */
+final class EnergyPyramid {
+
+    // The narrowest an image must be for an approximate search to find the cost of every seam in it
+    static final int COARSEST_WIDTH = 64;
+
+    // The weight of each energy of a full block of 2 by 2, and of a block cut off by the right edge
+    private static final float FULL_BLOCK_WEIGHT = 0.25f;
+    private static final float EDGE_BLOCK_WEIGHT = 0.5f;
+
+    // The energies of every level, packed row by row. Level 0 is the energy map's own array.
+    private final float[][] levels;
+
+    // The distance between the starts of two rows, the width and the height of every level.
+    // Each level has room for a row as wide as the widest the image can be.
+    private final int[] strides;
+    private final int[] widths;
+    private final int[] heights;
+
+    // The position of the edited seam in each row of the level being updated,
+    // and the first and last column of each row whose energies changed. Reused by every update.
+    private final int[] seamColumns;
+    private final int[] firstChangedColumns;
+    private final int[] lastChangedColumns;
+
+    // The columns of the seam found in the last two levels searched, and the window of columns searched
+    // in each row. Reused by every search.
+    private final int[] coarseColumns;
+    private final int[] fineColumns;
+    private final int[] firstColumns;
+    private final int[] lastColumns;
+
+    // The cheapest costs of the windows of the previous and current rows of a search, and the step from the pixel
+    // above to every pixel of every window. Grown as wider bands are searched, and reused by every search.
+    private float[] previousCosts = new float[0];
+    private float[] currentCosts = new float[0];
+    private byte[] steps = new byte[0];
+
+    /**
+     * Builds the pyramid of a grid of energies.
+     * @param energies The energies, packed row by row. The pyramid keeps the array as its level 0.
+     * @param stride The distance between the starts of two rows of energies.
+     * @param width The number of columns of energies.
+     * @param height The number of rows of energies.
+     */
+    EnergyPyramid(float[] energies, int stride, int width, int height) {
+        int levelCount = levelCount(width, height);
+        levels = new float[levelCount][];
+        strides = new int[levelCount];
+        widths = new int[levelCount];
+        heights = new int[levelCount];
+        levels[0] = energies;
+        strides[0] = stride;
+        widths[0] = width;
+        heights[0] = height;
+        for (int level = 1; level < levelCount; level++) {
+            strides[level] = (strides[level - 1] + 1) / 2;
+            widths[level] = (widths[level - 1] + 1) / 2;
+            heights[level] = (heights[level - 1] + 1) / 2;
+            levels[level] = new float[strides[level] * heights[level]];
+            for (int row = 0; row < heights[level]; row++) {
+                for (int col = 0; col < widths[level]; col++) {
+                    average(level, row, col);
+                }
+            }
+        }
+
+        seamColumns = new int[height];
+        firstChangedColumns = new int[height];
+        lastChangedColumns = new int[height];
+        coarseColumns = new int[height];
+        fineColumns = new int[height];
+        firstColumns = new int[height];
+        lastColumns = new int[height];
+    }
+
+    /**
+     * Returns the number of levels a pyramid of an image of the given size has, counting level 0.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return The number of levels.
+     */
+    private static int levelCount(int width, int height) {
+        int levelCount = 1;
+        for (int levelWidth = width, levelHeight = height; levelWidth > COARSEST_WIDTH && levelHeight > 1;
+             levelWidth = (levelWidth + 1) / 2, levelHeight = (levelHeight + 1) / 2) {
+            levelCount++;
+        }
+        return levelCount;
+    }
+
+    /**
+     * Returns whether the pyramid has the levels an image of the given size needs. Once the image has become
+     * so much narrower or wider that it needs a level fewer or more, the pyramid should be built again.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return Whether the pyramid fits the image.
+     */
+    boolean fits(int width, int height) {
+        return heights[0] == height && levels.length == levelCount(width, height);
+    }
+
+    /**
+     * Averages the block of 2 by 2 energies of the level before that one energy of a level covers.
+     * A block cut off by the right or bottom edge counts the energies it has twice.
+     * @param level The level, from 1.
+     * @param row The row of the energy.
+     * @param col The column of the energy.
+     */
+    private void average(int level, int row, int col) {
+        float[] from = levels[level - 1];
+        int top = 2 * row * strides[level - 1];
+        int bottom = 2 * row + 1 < heights[level - 1] ? top + strides[level - 1] : top;
+        int left = 2 * col;
+        levels[level][row * strides[level] + col] = left + 1 < widths[level - 1]
+                ? (from[top + left] + from[top + left + 1] + from[bottom + left] + from[bottom + left + 1])
+                        * FULL_BLOCK_WEIGHT
+                : (from[top + left] + from[bottom + left]) * EDGE_BLOCK_WEIGHT;
+    }
+
+    /**
+     * Updates the pyramid after a vertical seam was removed from the image, once level 0 is up to date.
+     * @param columns The column the removed seam crossed each row at.
+     * @param width The width of the image now.
+     */
+    void removeSeam(int[] columns, int width) {
+        update(columns, width, -1);
+    }
+
+    /**
+     * Updates the pyramid after a vertical seam was inserted into the image, once level 0 is up to date.
+     * @param columns The column the inserted seam crosses each row at.
+     * @param width The width of the image now.
+     */
+    void insertSeam(int[] columns, int width) {
+        update(columns, width, 1);
+    }
+
+    /**
+     * Updates the pyramid after the pixels of a vertical seam were recolored, once level 0 is up to date.
+     * @param columns The column the seam crosses each row at.
+     */
+    void refresh(int[] columns) {
+        update(columns, widths[0], 0);
+    }
+
+    /**
+     * Updates every level after level 0 around an edited vertical seam, one level at a time.
+     * @param columns The column the seam crosses each row at.
+     * @param width The width of the image now.
+     * @param widthChange How much the edit changed the width of the image: -1, 0 or 1.
+     */
+    private void update(int[] columns, int width, int widthChange) {
+        widths[0] = width;
+        int lastRow = heights[0] - 1;
+        // In level 0 the energy map found again every energy within one column of the seam in this row
+        // or the rows next to it
+        for (int row = 0; row <= lastRow; row++) {
+            int before = columns[Math.max(row - 1, 0)];
+            int after = columns[Math.min(row + 1, lastRow)];
+            seamColumns[row] = columns[row];
+            firstChangedColumns[row] = Math.max(Math.min(columns[row], Math.min(before, after)) - 1, 0);
+            lastChangedColumns[row] = Math.min(Math.max(columns[row], Math.max(before, after)) + 1, width - 1);
+        }
+
+        for (int level = 1; level < levels.length; level++) {
+            int newWidth = (widths[level - 1] + 1) / 2;
+            boolean resized = newWidth != widths[level];
+            int rowStart = 0;
+            // Row r of this level covers rows 2r and 2r + 1 of the level before, so the entries of the level
+            // before are always read before they are written over
+            for (int row = 0; row < heights[level]; row++, rowStart += strides[level]) {
+                int top = 2 * row;
+                int bottom = Math.min(top + 1, heights[level - 1] - 1);
+                int seamColumn = seamColumns[top] / 2;
+                if (resized && widthChange < 0) {
+                    System.arraycopy(levels[level], rowStart + seamColumn + 1, levels[level], rowStart + seamColumn,
+                            widths[level] - seamColumn - 1);
+                } else if (resized) {
+                    System.arraycopy(levels[level], rowStart + seamColumn, levels[level], rowStart + seamColumn + 1,
+                            widths[level] - seamColumn);
+                }
+
+                int firstChanged = Math.min(firstChangedColumns[top], firstChangedColumns[bottom]) / 2;
+                int lastChanged = Math.min(Math.max(lastChangedColumns[top], lastChangedColumns[bottom]) / 2,
+                        newWidth - 1);
+                for (int col = firstChanged; col <= lastChanged; col++) {
+                    average(level, row, col);
+                }
+                // The block at the right edge changes whenever the width of the level before it does
+                if (widthChange != 0 && lastChanged < newWidth - 1) {
+                    average(level, row, newWidth - 1);
+                }
+
+                seamColumns[row] = seamColumn;
+                firstChangedColumns[row] = firstChanged;
+                lastChangedColumns[row] = lastChanged;
+            }
+            widths[level] = newWidth;
+        }
+    }
+
+    /**
+     * Finds a low energy vertical seam. The whole of the coarsest level is searched, then only a band of columns
+     * around where that seam lands in every larger level, down to level 0.
+     * @param bandWidth The number of columns searched on either side of the coarser seam at every level.
+     * @return The column of the seam in each row of level 0.
+     */
+    int[] findSeam(int bandWidth) {
+        int coarsest = levels.length - 1;
+        for (int row = 0; row < heights[coarsest]; row++) {
+            firstColumns[row] = 0;
+            lastColumns[row] = widths[coarsest] - 1;
+        }
+        int[] columns = coarsest == 0 ? new int[heights[0]] : coarseColumns;
+        searchWindows(coarsest, columns);
+
+        for (int level = coarsest - 1; level >= 0; level--) {
+            for (int row = 0; row < heights[level]; row++) {
+                // Each pixel of the coarser level covers two columns of this one
+                int column = 2 * columns[row / 2];
+                firstColumns[row] = Math.max(0, column - bandWidth);
+                lastColumns[row] = Math.min(widths[level] - 1, column + 1 + bandWidth);
+            }
+            // The seam in level 0 is handed out, so it gets an array of its own
+            int[] finerColumns = level == 0 ? new int[heights[0]] : columns == coarseColumns ? fineColumns
+                    : coarseColumns;
+            searchWindows(level, finerColumns);
+            columns = finerColumns;
+        }
+        return columns;
+    }
+
+    /**
+     * Finds the cheapest vertical seam through a level that stays inside the window of columns set for every row
+     * in firstColumns and lastColumns. Only the energies inside the windows are read, and ties are broken the same
+     * way as a search of the whole image. Every window must touch the one above it.
+     * @param level The level.
+     * @param columns Where to store the column of the seam in each row.
+     */
+    private void searchWindows(int level, int[] columns) {
+        float[] energies = levels[level];
+        int rowStride = strides[level];
+        int rowCount = heights[level];
+        int windowCapacity = 0;
+        for (int row = 0; row < rowCount; row++) {
+            windowCapacity = Math.max(windowCapacity, lastColumns[row] - firstColumns[row] + 1);
+        }
+        if (previousCosts.length < windowCapacity) {
+            previousCosts = new float[windowCapacity];
+            currentCosts = new float[windowCapacity];
+        }
+        if (steps.length < rowCount * windowCapacity) {
+            steps = new byte[rowCount * windowCapacity];
+        }
+
+        // The costs of each window are stored from its first column. Each step is -1 left, 0 straight up, 1 right.
+        float[] previous = previousCosts;
+        float[] current = currentCosts;
+        for (int col = firstColumns[0]; col <= lastColumns[0]; col++) {
+            previous[col - firstColumns[0]] = energies[col];
+        }
+        for (int row = 1; row < rowCount; row++) {
+            int previousFirst = firstColumns[row - 1];
+            int previousLast = lastColumns[row - 1];
+            int rowStart = row * rowStride;
+            for (int col = firstColumns[row]; col <= lastColumns[row]; col++) {
+                // A pixel above outside its window can't be part of the seam
+                float bestValue = Float.POSITIVE_INFINITY;
+                byte step = 0;
+                if (col >= previousFirst && col <= previousLast) {
+                    bestValue = previous[col - previousFirst];
+                }
+                if (col - 1 >= previousFirst && col - 1 <= previousLast
+                        && previous[col - 1 - previousFirst] < bestValue) {
+                    bestValue = previous[col - 1 - previousFirst];
+                    step = -1;
+                }
+                if (col + 1 >= previousFirst && col + 1 <= previousLast
+                        && previous[col + 1 - previousFirst] < bestValue) {
+                    bestValue = previous[col + 1 - previousFirst];
+                    step = 1;
+                }
+                current[col - firstColumns[row]] = energies[rowStart + col] + bestValue;
+                steps[row * windowCapacity + col - firstColumns[row]] = step;
+            }
+
+            float[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        // Follow the steps back up from the first pixel with the lowest cost in the last row
+        int lastRow = rowCount - 1;
+        int bestColumn = firstColumns[lastRow];
+        for (int col = bestColumn + 1; col <= lastColumns[lastRow]; col++) {
+            if (previous[col - firstColumns[lastRow]] < previous[bestColumn - firstColumns[lastRow]]) {
+                bestColumn = col;
+            }
+        }
+        columns[lastRow] = bestColumn;
+        for (int row = lastRow; row > 0; row--) {
+            columns[row - 1] = columns[row] + steps[row * windowCapacity + columns[row] - firstColumns[row]];
+        }
+    }
+}
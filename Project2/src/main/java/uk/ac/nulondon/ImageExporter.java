@@ -0,0 +1,176 @@
+package uk.ac.nulondon;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes images to png files on a background thread, so that saving an image costs no more than copying it.
+ * When images are saved faster than they can be written, only the newest waiting image is written,
+ * and the older ones it replaced are skipped.
+ */
+class ImageExporter {
+
+    /**
+     * An image waiting to be written.
+     * @param image The image to write. It must not be changed after it is handed to the exporter.
+     * @param fileName The name of the file to write it to.
+     * @param written Completes with true once the file is written, or false if a newer image replaced it.
+     * @param reusable Whether the image's storage may be reused once the exporter is done with it.
+     */
+    private record Export(BufferedImage image, String fileName, CompletableFuture<Boolean> written,
+                          boolean reusable) {
+    }
+
+    // The directory the files are written to
+    private final File directory;
+
+    // The single thread that writes the files, one at a time
+    private final ExecutorService writer;
+
+    // The newest image that hasn't started being written yet, or null if there is none.
+    private final AtomicReference<Export> pending = new AtomicReference<>();
+
+    // An image that was written or skipped, whose storage can be reused for a later image, or null if there is none.
+    private final AtomicReference<BufferedImage> finishedImage = new AtomicReference<>();
+
+    /**
+     * Creates a new ImageExporter that writes files to the given directory.
+     * @param directory The directory to write the files to.
+     */
+    ImageExporter(File directory) {
+        this.directory = directory;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "image-exporter");
+            // Waiting images shouldn't keep the program running. Use exportAndWait for images that must be written.
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Writes an image to a png file in the background.
+     * If an older image is still waiting to be written, it is skipped and this image is written instead.
+     * Once the exporter is done with the image, it can be taken back with takeFinishedImage.
+     * @param image The image to write. It must not be changed afterwards.
+     * @param fileName The name of the file to write it to.
+     * @return A future that completes with true once the file is written, or false if the image was skipped.
+     */
+    CompletableFuture<Boolean> export(BufferedImage image, String fileName) {
+        return export(new Export(image, fileName, new CompletableFuture<>(), true));
+    }
+
+    /**
+     * Hands an image to the writer thread, skipping any older image still waiting to be written.
+     * @param export The image to write.
+     * @return A future that completes with true once the file is written, or false if the image was skipped.
+     */
+    private CompletableFuture<Boolean> export(Export export) {
+        Export replaced = pending.getAndSet(export);
+        if (replaced != null) {
+            // The writer hasn't picked up the older image yet, and will pick up this one instead
+            finish(replaced);
+            replaced.written().complete(false);
+        } else {
+            writer.execute(this::writePending);
+        }
+        return export.written();
+    }
+
+    /**
+     * Writes an image to a png file, and waits until it is on the disk.
+     * Any older image still waiting to be written is skipped.
+     * The image is never reused, so it may share storage with something else, such as an ImageGraph.
+     * @param image The image to write. It must not be changed until this returns.
+     * @param fileName The name of the file to write it to.
+     * @throws IOException If the image couldn't be written.
+     */
+    void exportAndWait(BufferedImage image, String fileName) throws IOException {
+        try {
+            export(new Export(image, fileName, new CompletableFuture<>(), false)).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Failed to write " + fileName, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing " + fileName, e);
+        }
+    }
+
+    /**
+     * Takes an image the exporter has finished with, so that its storage can be reused for the next image.
+     * @return An image that was written or skipped, or null if there is none. The exporter never uses it again.
+     */
+    BufferedImage takeFinishedImage() {
+        return finishedImage.getAndSet(null);
+    }
+
+    /**
+     * Makes an image the exporter is done with available for reuse, if it may be reused.
+     * @param export The written or skipped image.
+     */
+    private void finish(Export export) {
+        if (export.reusable()) {
+            finishedImage.set(export.image());
+        }
+    }
+
+    /**
+     * Writes the newest waiting image, if it wasn't already written by an earlier call. Runs on the writer thread.
+     */
+    private void writePending() {
+        Export export = pending.getAndSet(null);
+        if (export == null) {
+            return;
+        }
+
+        try {
+            write(export.image(), new File(directory, export.fileName()));
+            finish(export);
+            export.written().complete(true);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Failed to export " + export.fileName());
+            export.written().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Writes an image to a png file and forces it to the disk.
+     * The image is written to a temporary file first and then moved over the file,
+     * so the file never holds a partly written image.
+     * @param image The image to write.
+     * @param file The file to write it to.
+     * @throws IOException If the image couldn't be written.
+     */
+    static void write(BufferedImage image, File file) throws IOException {
+        Path path = file.toPath();
+        Path partPath = path.resolveSibling(file.getName() + ".part");
+
+        if (!ImageIO.write(image, "png", partPath.toFile())) {
+            throw new IOException("No png writer is available");
+        }
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+
+        try {
+            Files.move(partPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -3,37 +3,45 @@ package uk.ac.nulondon;
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Represents an image. Can find seams to compress the image without loosing much information.
  */
 public class ImageGraph {
     /**
-     * A representation of a single pixel.
-     * Stores references to its neighbors (top, down, left, and right)
+     * A representation of a single pixel's color.
+     * Pixels are not linked to their neighbors; the image stores its pixels packed row by row,
+     * so a Pixel is only used where a color has to live outside the image, such as in a removed seam.
      */
     public static class Pixel {
 
-        public Pixel rightNeighbor;
-        public Pixel leftNeighbor;
-        // The parent is the "topNeighbor"
-        public Pixel parent;
-        // The child is the "bottomNeighbor"
-        public Pixel child;
         private int RGBValue;
-        private double brightness;
 
         public Pixel() {
             this.RGBValue = 0;
-            setBrightness();
         }
 
         public Pixel(int rgb) {
             this.RGBValue = rgb;
-            setBrightness();
         }
 
         /**
@@ -50,36 +58,45 @@ public class ImageGraph {
          */
         public void setRGB(int rgb) {
             this.RGBValue = rgb;
-            setBrightness();
         }
 
         /**
-         * Returns the brightness of this pixel.
+         * Returns the brightness of this pixel. It is found from the color each time, rather than kept.
          * @return the brightness of this pixel.
          */
         public double getBrightness() {
-            return brightness;
+            return brightnessOf(RGBValue);
         }
 
         /**
-         * Sets the brightness of this pixel based on its color
+         * Finds the brightness of a color, the average of its red, green and blue components.
+         * @param rgb The integer representation of the color.
+         * @return The brightness of that color.
          */
-        private void setBrightness() {
-            Color color = new Color(RGBValue);
-            brightness = ((double) (color.getRed() + color.getGreen() + color.getBlue())) / 3;
+        public static double brightnessOf(int rgb) {
+            return ((double) (((rgb >> RED_SHIFT) & CHANNEL_MASK) + ((rgb >> GREEN_SHIFT) & CHANNEL_MASK)
+                    + (rgb & CHANNEL_MASK))) / 3;
         }
     }
 
     /**
      * A node of a seam. A seam is represented by its first node, like a linked list.
+     * The first node lies in the bottom row of the image, and each previous node lies one row above it.
+     * A horizontal seam is the same thing in the transposed image: its first node lies in the last column,
+     * each previous node lies one column to the left of it, and each node's column is the row it crosses at.
      */
     public static class SeamNode {
 
         // The relationship between this node and the previous node in the graph.
         private PreviousSeamRelationship relationship;
 
-        // The pixel stored in this node
+        // The pixel stored in this node. Nodes found by a search only keep its color, and make the pixel
+        // the first time it is asked for.
         private Pixel pixel;
+        private final int rgb;
+
+        // The column of the image this node's pixel is in.
+        private final int column;
 
         // The previous node in the seam, which is above this node in the image. Similar to a linked list.
         private SeamNode previousNode;
@@ -90,26 +107,28 @@ public class ImageGraph {
         /**
          * Creates a new Seam Node
          * @param pixel The pixel to store in this node.
+         * @param column The column of the image the pixel is in.
          * @param previousNode The previous node in the seam that this node should point to.
          * @param relationship The relationship between this node and the previous.
-         * @param energyFormula The energyFormula that should be used to determine this node's cost.
+         * @param cost The cost of this node.
          */
-        public SeamNode(Pixel pixel, SeamNode previousNode, PreviousSeamRelationship relationship, EnergyFormula energyFormula) {
+        public SeamNode(Pixel pixel, int column, SeamNode previousNode,
+                        PreviousSeamRelationship relationship, double cost) {
+            this(pixel.getRGB(), column, previousNode, relationship, cost);
             this.pixel = pixel;
-            this.previousNode = previousNode;
-            this.relationship = relationship;
-            this.cost = energyFormula.energyFormula(pixel) + previousNode.cost;
         }
 
         /**
-         * Creates a new Seam Node
-         * @param pixel The pixel to store in this node.
-         * @param previousNode The previous node in the seam that this node should point to.
+         * Creates a new Seam Node that only keeps the color of its pixel.
+         * @param rgb The color of the pixel of this node.
+         * @param column The column of the image the pixel is in.
+         * @param previousNode The previous node in the seam that this node should point to, or null at the top row.
          * @param relationship The relationship between this node and the previous.
          * @param cost The cost of this node.
          */
-        public SeamNode(Pixel pixel, SeamNode previousNode, PreviousSeamRelationship relationship, double cost) {
-            this.pixel = pixel;
+        SeamNode(int rgb, int column, SeamNode previousNode, PreviousSeamRelationship relationship, double cost) {
+            this.rgb = rgb;
+            this.column = column;
             this.previousNode = previousNode;
             this.relationship = relationship;
             this.cost = cost;
@@ -118,15 +137,13 @@ public class ImageGraph {
         /**
          * Creates a new Seam Node. This constructor is used at the top row, when previousNode is null.
          * @param pixel The pixel to store in this node.
-         * @param energyFormula The energyFormula that should be used to determine this node's cost.
+         * @param column The column of the image the pixel is in.
+         * @param cost The cost of this node.
          */
-        public SeamNode(Pixel pixel, EnergyFormula energyFormula) {
-            this.pixel = pixel;
-            this.previousNode = null;
+        public SeamNode(Pixel pixel, int column, double cost) {
             // assign the previous seam relationship to STRAIGHT_UP
             // as it is the least complicated relationship
-            this.relationship = PreviousSeamRelationship.STRAIGHT_UP;
-            this.cost = energyFormula.energyFormula(pixel);
+            this(pixel, column, null, PreviousSeamRelationship.STRAIGHT_UP, cost);
         }
 
         /**
@@ -134,9 +151,28 @@ public class ImageGraph {
          * @return The pixel of this node.
          */
         public Pixel getPixel() {
+            if (pixel == null) {
+                pixel = new Pixel(rgb);
+            }
             return pixel;
         }
 
+        /**
+         * Returns the color of the pixel of this node, without making the pixel.
+         * @return The color of this node's pixel.
+         */
+        public int getRGB() {
+            return pixel != null ? pixel.getRGB() : rgb;
+        }
+
+        /**
+         * Returns the column of the image this node's pixel is in.
+         * @return The column of this node's pixel.
+         */
+        public int getColumn() {
+            return column;
+        }
+
         /**
          * Returns the previous node of this node.
          * @return The previous node of this node.
@@ -200,14 +236,34 @@ public class ImageGraph {
     /**
      * An interface for energy formulas that find the 'energy' of a pixel in different ways.
      */
-    private interface EnergyFormula {
+    interface EnergyFormula {
 
         /**
-         * Finds the energy of the given pixel.
-         * @param currentPixel The pixel to find the energy of.
+         * Finds the energy of the pixel at the given position.
+         * @param image The image the pixel is in.
+         * @param x The column of the pixel.
+         * @param y The row of the pixel.
          * @return That pixel's 'energy'.
          */
-        double energyFormula(Pixel currentPixel);
+        double energyFormula(ImageGraph image, int x, int y);
+
+        /**
+         * Finds the energy of every pixel in a block of whole rows.
+         * Formulas that can share work between neighboring pixels should override this.
+         * @param image The image the pixels are in.
+         * @param firstRow The first row of the block.
+         * @param endRow The row after the last row of the block.
+         * @param energies Where to store the energies, rounded to floats. The energy of the pixel at (x, y) goes in
+         *                 energies[y * rowLength + x].
+         * @param rowLength The distance between the starts of two rows in energies.
+         */
+        default void energyRows(ImageGraph image, int firstRow, int endRow, float[] energies, int rowLength) {
+            for (int y = firstRow; y < endRow; y++) {
+                for (int x = 0; x < image.width; x++) {
+                    energies[y * rowLength + x] = (float) energyFormula(image, x, y);
+                }
+            }
+        }
     }
 
     /**
@@ -217,13 +273,16 @@ public class ImageGraph {
 
         /**
          * Gives the energy of the current pixel, based on how blue it is.
-         * @param currentPixel The pixel to evaluate.
+         * @param image The image the pixel is in.
+         * @param x The column of the pixel to evaluate.
+         * @param y The row of the pixel to evaluate.
          * @return How blue that pixel is, as a double.
          *      The smaller the integer, the more blue the pixel is.
          */
         @Override
-        public double energyFormula(Pixel currentPixel) {
-            return 255 - new Color(currentPixel.getRGB()).getBlue();
+        public double energyFormula(ImageGraph image, int x, int y) {
+            // The blue component is the lowest byte of the color
+            return CHANNEL_MASK - (image.getRGB(x, y) & CHANNEL_MASK);
         }
     }
 
@@ -232,29 +291,19 @@ public class ImageGraph {
      */
     public static class BrightnessEnergy implements EnergyFormula {
 
+        // Finds the energy of a whole row at a time, with vector instructions when they are available.
+        private static final SobelKernel KERNEL = SobelKernel.create();
+
         /**
          * Gives the energy of the current pixel, based on the brightness of it and its neighbors.
-         * @param currentPixel The pixel to evaluate.
+         * @param image The image the pixel is in.
+         * @param x The column of the pixel to evaluate.
+         * @param y The row of the pixel to evaluate.
          * @return How much "energy" that pixel has, as a double.
          */
         @Override
-        public double energyFormula(Pixel currentPixel) {
-            if (currentPixel == null) {
-                return 0.0;
-            }
-
-            Pixel parent = currentPixel.parent;
-            Pixel child = currentPixel.child;
-            Pixel left = currentPixel.leftNeighbor;
-            Pixel right = currentPixel.rightNeighbor;
-
-            // Finds the diagonals using the parent and child.
-            //  If the parent or child is null, then the currentPixel is at the top
-            //  or bottom of the image, and the corresponding up or down diagonals are also null.
-            Pixel upLeft = parent == null ? null : parent.leftNeighbor;
-            Pixel upRight = parent == null ? null : parent.rightNeighbor;
-            Pixel downLeft = child == null ? null : child.leftNeighbor;
-            Pixel downRight = child == null ? null : child.rightNeighbor;
+        public double energyFormula(ImageGraph image, int x, int y) {
+            double current = image.getBrightness(x, y);
 
             /*
             Doubles A-I represent the brightness of each pixel, where E is the current node and
@@ -264,59 +313,236 @@ public class ImageGraph {
             D | E | F
             G | H | I
             */
-            double A = brightnessEnergyHelper(upLeft, currentPixel);
-            double B = brightnessEnergyHelper(parent, currentPixel);
-            double C = brightnessEnergyHelper(upRight, currentPixel);
-            double D = brightnessEnergyHelper(left, currentPixel);
-            double F = brightnessEnergyHelper(right, currentPixel);
-            double G = brightnessEnergyHelper(downLeft, currentPixel);
-            double H = brightnessEnergyHelper(child, currentPixel);
-            double I = brightnessEnergyHelper(downRight, currentPixel);
+            double A = brightnessEnergyHelper(image, x - 1, y - 1, current);
+            double B = brightnessEnergyHelper(image, x, y - 1, current);
+            double C = brightnessEnergyHelper(image, x + 1, y - 1, current);
+            double D = brightnessEnergyHelper(image, x - 1, y, current);
+            double F = brightnessEnergyHelper(image, x + 1, y, current);
+            double G = brightnessEnergyHelper(image, x - 1, y + 1, current);
+            double H = brightnessEnergyHelper(image, x, y + 1, current);
+            double I = brightnessEnergyHelper(image, x + 1, y + 1, current);
 
             // The given equation
             double horizontalEnergy = A + 2 * D + G - (C + 2 * F + I);
             double verticalEnergy = A + 2 * B + C - (G + 2 * H + I);
 
-            return Math.sqrt(
-                    Math.pow(horizontalEnergy, 2) + Math.pow(verticalEnergy, 2)
-            );
+            return Math.sqrt(horizontalEnergy * horizontalEnergy + verticalEnergy * verticalEnergy);
         }
 
         /**
          * Returns the brightness of a given neighbor.
-         * If that neighbor is null, returns the currentPixel's brightness instead
-         * @param neighbor The neighbor to find the brightness of.
-         * @param currentPixel The current pixel to default back to if neighbor is null.
-         * @return The brightness of neighbor if it is not null, otherwise the brightness of currentPixel.
+         * If that neighbor is outside the image, returns the current pixel's brightness instead
+         * @param image The image the neighbor is in.
+         * @param x The column of the neighbor.
+         * @param y The row of the neighbor.
+         * @param current The brightness of the current pixel to default back to if the neighbor doesn't exist.
+         * @return The brightness of the neighbor if it exists, otherwise the brightness of the current pixel.
+         */
+        private static double brightnessEnergyHelper(ImageGraph image, int x, int y, double current) {
+            if (x < 0 || y < 0 || x >= image.width || y >= image.height) {
+                return current;
+            }
+            return image.getBrightness(x, y);
+        }
+
+        /**
+         * Gives the energy of every pixel in a block of rows. The brightness of the rows is found once,
+         * and the energies of a whole row are found at a time from the brightness of it and the rows around it.
+         * The energies are exactly the same as the ones given by energyFormula for each pixel.
+         * @param image The image the pixels are in.
+         * @param firstRow The first row of the block.
+         * @param endRow The row after the last row of the block.
+         * @param energies Where to store the energies, rounded to floats. The energy of the pixel at (x, y) goes in
+         *                 energies[y * rowLength + x].
+         * @param rowLength The distance between the starts of two rows in energies.
+         */
+        @Override
+        public void energyRows(ImageGraph image, int firstRow, int endRow, float[] energies, int rowLength) {
+            // The brightness of row y is kept in brightnessRows[y % 3], so the rows above and below are always there
+            double[][] brightnessRows = new double[3][image.width];
+            if (firstRow > 0) {
+                image.getBrightnessRow(firstRow - 1, brightnessRows[(firstRow - 1) % 3]);
+            }
+            image.getBrightnessRow(firstRow, brightnessRows[firstRow % 3]);
+
+            for (int y = firstRow; y < endRow; y++) {
+                if (y + 1 < image.height) {
+                    image.getBrightnessRow(y + 1, brightnessRows[(y + 1) % 3]);
+                }
+
+                // A missing row above or below is passed as null
+                double[] above = y > 0 ? brightnessRows[(y - 1) % 3] : null;
+                double[] below = y + 1 < image.height ? brightnessRows[(y + 1) % 3] : null;
+                KERNEL.energyRow(above, brightnessRows[y % 3], below, image.width, energies, y * rowLength);
+            }
+        }
+
+    }
+
+    /**
+     * The rows of a seam search after the first (or the columns, for a horizontal seam), run on the search pool.
+     * A pixel's cost only depends on the row above it, so each row is split into chunks of columns
+     * that are searched at the same time, and every chunk of a row is finished before the next row starts.
+     */
+    private class ParallelSeamSearch extends RecursiveTask<float[]> {
+
+        private final float[] energies;
+        private float[] previousCosts;
+        private float[] currentCosts;
+        private final Direction direction;
+
+        /**
+         * Creates a new search of every line after the first.
+         * @param energies The energy of every pixel.
+         * @param previousCosts The cheapest cost of a seam ending at each pixel in the first line.
+         * @param currentCosts A buffer for the costs of the next line.
+         * @param direction The direction of the seam.
+         */
+        ParallelSeamSearch(float[] energies, float[] previousCosts, float[] currentCosts, Direction direction) {
+            this.energies = energies;
+            this.previousCosts = previousCosts;
+            this.currentCosts = currentCosts;
+            this.direction = direction;
+        }
+
+        /**
+         * Searches every row after the first.
+         * @return The cheapest cost of a seam ending at each pixel in the last row.
          */
-        private static double brightnessEnergyHelper(Pixel neighbor, Pixel currentPixel) {
-            return neighbor == null ? currentPixel.getBrightness() : neighbor.getBrightness();
+        @Override
+        protected float[] compute() {
+            int lineLength = lineLength(direction);
+            int chunkCount = Math.min(parallelism, lineLength / PARALLEL_CHUNK_WIDTH);
+            SeamRowChunk[] chunks = new SeamRowChunk[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                chunks[i] = new SeamRowChunk(i * lineLength / chunkCount, (i + 1) * lineLength / chunkCount);
+            }
+
+            for (int row = 1; row < lineCount(direction); row++) {
+                for (SeamRowChunk chunk : chunks) {
+                    // The chunks are reused for every row
+                    chunk.reinitialize();
+                    chunk.row = row;
+                }
+                invokeAll(chunks);
+
+                // The current row becomes the previous row, and its old buffer is reused for the next row
+                float[] swap = previousCosts;
+                previousCosts = currentCosts;
+                currentCosts = swap;
+            }
+            return previousCosts;
         }
 
+        /**
+         * A chunk of columns of the row being searched.
+         */
+        private final class SeamRowChunk extends RecursiveAction {
+
+            private final int firstCol;
+            private final int endCol;
+            private int row;
+
+            /**
+             * Creates a new chunk of columns.
+             * @param firstCol The first column of the chunk.
+             * @param endCol The column after the last column of the chunk.
+             */
+            SeamRowChunk(int firstCol, int endCol) {
+                this.firstCol = firstCol;
+                this.endCol = endCol;
+            }
+
+            @Override
+            protected void compute() {
+                searchRow(energies, previousCosts, currentCosts, direction, row, firstCol, endCol);
+            }
+        }
     }
 
-    // The height (in pixels) of the graph. This never changes.
-    private final int height;
+    // The height (in pixels) of the graph. This changes as horizontal seams are deleted and restored.
+    private int height;
 
     // The width (in pixels) of the graph. This changes as seams are deleted and restored.
     private int width;
 
-    // The topmost and leftmost pixel in the graph. Storing this is a method of storing the whole image.
-    private Pixel head;
-
-    /* The image graph is represented like so
-                null                  null                  null      null
-                 |                     |                     |        |
-       null --- head       ––– head.rightNeighbor       --- ... --- a pixel ––– null
-                 |                     |                     |        |
-       null --- head.child --- head.child.rightNeighbor --- ... --- a pixel --- null
-                 |                     |                     |        |
-       null --- ...        ---        ...               --- ... ---  ...    --- null
-                 |                     |                     |        |
-       null --- a pixel    ---      a pixel             --- ... --- a pixel --- null
-                 |                     |                     |        |
-               null                  null                  null      null
+    // The distance between the starts of two rows in pixels. This is the original width of the image,
+    // or the widest the image has been enlarged to.
+    private int stride;
+
+    // Every pixel's color, packed row by row. Storing this is a method of storing the whole image.
+    private int[] pixels;
+
+    /**
+     * The direction a seam runs in. A search sees the image as lines of positions: a vertical seam crosses
+     * every row at one column, and a horizontal seam crosses every column at one row. A horizontal search is
+     * the vertical one on a transposed view of the pixels, where rows and columns swap places, so neither
+     * direction needs a copy of the image.
+     */
+    enum Direction {
+        VERTICAL,
+        HORIZONTAL,
+    }
+
+    // Every relationship, indexed by ordinal. Used to read back the relationships stored by findSeam.
+    static final SeamNode.PreviousSeamRelationship[] RELATIONSHIPS =
+            SeamNode.PreviousSeamRelationship.values();
+
+    // The cheapest seam costs of the previous and current rows of a search. Reused by every search.
+    private float[] previousSeamCosts;
+    private float[] currentSeamCosts;
+
+    // The relationship of every pixel with the best pixel above it, stored by ordinal. Reused by every search.
+    private byte[] seamRelationships;
+
+    // The energies of the columns a region search covers, packed row by row, when the image has no cached energies
+    // for its formula. Grown as wider regions are searched, and reused by every such search.
+    private float[] regionEnergies;
 
+    // The alpha bits of a fully opaque color, and the bits of its red, green and blue channels.
+    private static final int OPAQUE = 0xFF000000;
+    private static final int RGB_MASK = 0x00FFFFFF;
+
+    // How far the alpha, red and green channels of a packed color are shifted, and the bits of one channel.
+    private static final int ALPHA_SHIFT = 24;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int CHANNEL_MASK = 0xFF;
+
+    // The color model of TYPE_INT_RGB, which ignores the alpha bits of the packed colors.
+    private static final DirectColorModel RGB_COLOR_MODEL =
+            (DirectColorModel) new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getColorModel();
+
+    // The smallest number of columns a row is split into when searching in parallel.
+    private static final int PARALLEL_CHUNK_WIDTH = 512;
+
+    // The largest number of pixels whose energies are found together when finding them in parallel.
+    static final int PARALLEL_CHUNK_PIXELS = 65_536;
+
+    // The number of threads seam searches may use, and the pool they run on. The pool is null when it is 1.
+    private int parallelism = 1;
+    private ForkJoinPool searchPool;
+
+    // Whether findSeam keeps seam costs between searches. See setIncrementalSearch.
+    private boolean incrementalSearch;
+
+    // The column of a seam in each row, and the color of its pixel there. Reused whenever a seam is walked.
+    private int[] seamColumns;
+    private int[] seamColors;
+
+    // The cached energies of the image, one for each kind of energy formula that has been used to find a seam.
+    // Energy formulas hold no state, so all formulas of the same class share one cache.
+    private final Map<Class<?>, EnergyMap> energyMaps = new HashMap<>();
+
+    /* The image graph is represented like so, where w is the width and s is the stride
+
+       pixels: | row 0: (0, 0) ... (w - 1, 0) unused ... | row 1: (0, 1) ... (w - 1, 1) unused ... | ...
+               ^ 0                                       ^ s                                      ^ 2s
+
+       A pixel's neighbors are found with arithmetic instead of pointers:
+       the left and right neighbors are at index -1 and +1, the parent and child at index -s and +s.
+       Removing a seam shifts the rest of every row one place to the left, so the first width
+       entries of each row are always the current image, and the unused tail grows by one.
     */
 
     /**
@@ -324,74 +550,137 @@ public class ImageGraph {
      * @param bufferedImage The BufferedImage to store.
      */
     public ImageGraph(BufferedImage bufferedImage) {
-        head = new Pixel(bufferedImage.getRGB(0, 0));
-
         width = bufferedImage.getWidth();
         height = bufferedImage.getHeight();
+        stride = width;
+        pixels = new int[stride * height];
 
         buildImage(bufferedImage);
     }
 
     /**
-     * Helper function for the constructor. Builds the graph representation of the image.
-     * @param bufferedImage The buffered image to store.
+     * Constructs an empty ImageGraph with room for the given number of pixels, to copy another graph into.
+     * @param stride The distance between the starts of two rows in pixels.
+     * @param capacity The number of pixels to make room for.
      */
-    private void buildImage(BufferedImage bufferedImage) {
-        // Initializing the iterating variables
-        Pixel previousPixel = null;
-        Pixel currentParent = null;
-        Pixel currentPixel = head;
-        Pixel firstPixelCurrentRow = currentPixel;
+    private ImageGraph(int stride, int capacity) {
+        this.stride = stride;
+        this.pixels = new int[capacity];
+    }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
+    /**
+     * Returns a copy of the image, which can be worked on by another thread while this graph keeps being edited.
+     * Only the pixels are copied. The copy finds its own energies, and searches on a single thread.
+     * @param reusableCopy An older copy whose storage may be reused if it is the same size, or null.
+     *                     It must not be used by anything else anymore.
+     * @return The copy. This is reusableCopy if its storage was reused.
+     */
+    ImageGraph copy(ImageGraph reusableCopy) {
+        ImageGraph copy = reusableCopy;
+        if (copy == null || copy.stride != stride || copy.pixels.length != pixels.length) {
+            copy = new ImageGraph(stride, pixels.length);
+        }
 
-                // ----------------- Setting parent and parent's child -------------------- \\
-                currentPixel.parent = currentParent;
-                if (y != 0) {  // When current parent isn't null
-                    currentParent.child = currentPixel;
+        // The rows share the stride, so they are copied in one go, unused tails and all
+        System.arraycopy(pixels, 0, copy.pixels, 0, height * stride);
+        copy.width = width;
+        copy.height = height;
+        copy.energyMaps.clear();
+        return copy;
+    }
 
-                    // Iterating currentParent here to limit number of if statements.
-                    currentParent = currentParent.rightNeighbor;
-                }
+    /**
+     * Helper function for the constructor. Copies the colors of the image into the packed rows.
+     * The common image types are read straight from their raster data a row at a time, which gives
+     * the same colors as BufferedImage.getRGB without converting every pixel through the color model.
+     * Other types fall back to a single bulk getRGB call.
+     * @param bufferedImage The buffered image to store.
+     */
+    private void buildImage(BufferedImage bufferedImage) {
+        boolean copied = switch (bufferedImage.getType()) {
+            case BufferedImage.TYPE_INT_RGB -> copyIntRows(bufferedImage.getRaster(), true);
+            case BufferedImage.TYPE_INT_ARGB -> copyIntRows(bufferedImage.getRaster(), false);
+            case BufferedImage.TYPE_3BYTE_BGR -> copyByteRows(bufferedImage.getRaster(), false);
+            case BufferedImage.TYPE_4BYTE_ABGR -> copyByteRows(bufferedImage.getRaster(), true);
+            default -> false;
+        };
+
+        if (!copied) {
+            bufferedImage.getRGB(0, 0, width, height, pixels, 0, stride);
+        }
+    }
 
-                // Set the current pixel's child to null when at the last row
-                if (y == (height - 1)) {
-                    currentPixel.child = null;
-                }
+    /**
+     * Copies the rows of a raster that packs each pixel into one int, such as TYPE_INT_RGB or TYPE_INT_ARGB.
+     * @param raster The raster of the image.
+     * @param opaque Whether the raster has no alpha, so every pixel is made fully opaque like getRGB does.
+     * @return Whether the raster had the expected layout and was copied.
+     */
+    private boolean copyIntRows(WritableRaster raster, boolean opaque) {
+        if (!(raster.getDataBuffer() instanceof DataBufferInt dataBuffer)
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel)) {
+            return false;
+        }
 
-                // ---------------- Setting the left and right neighbors ------------------ \\
-                currentPixel.leftNeighbor = previousPixel;
+        int[] data = dataBuffer.getData();
+        int scanlineStride = sampleModel.getScanlineStride();
+        // The raster may be a part of a larger one, so its first pixel isn't necessarily at the start of the data
+        int firstPixel = dataBuffer.getOffset()
+                - raster.getSampleModelTranslateY() * scanlineStride
+                - raster.getSampleModelTranslateX();
 
-                if (x == (width - 1)) {
-                    currentPixel.rightNeighbor = null;
-                } else {
-                    // Creating a new pixel to the right when not at last collumn
-                    currentPixel.rightNeighbor = new Pixel(bufferedImage.getRGB(x + 1, y));
+        for (int y = 0; y < height; y++) {
+            int from = firstPixel + y * scanlineStride;
+            int to = y * stride;
+            if (opaque) {
+                for (int x = 0; x < width; x++) {
+                    pixels[to + x] = OPAQUE | (data[from + x] & RGB_MASK);
                 }
-
-                // Iterate to the next pixel in row
-                // currentParent was already iterated
-                previousPixel = currentPixel;
-                currentPixel = currentPixel.rightNeighbor;
+            } else {
+                System.arraycopy(data, from, pixels, to, width);
             }
+        }
+        return true;
+    }
 
+    /**
+     * Copies the rows of a raster that stores each color channel of a pixel in its own byte,
+     * such as TYPE_3BYTE_BGR or TYPE_4BYTE_ABGR.
+     * @param raster The raster of the image.
+     * @param hasAlpha Whether the pixels have an alpha byte. If not, every pixel is made fully opaque.
+     * @return Whether the raster had the expected layout and was copied.
+     */
+    private boolean copyByteRows(WritableRaster raster, boolean hasAlpha) {
+        if (!(raster.getDataBuffer() instanceof DataBufferByte dataBuffer)
+                || !(raster.getSampleModel() instanceof ComponentSampleModel sampleModel)) {
+            return false;
+        }
 
-            // Iterate to the next line, if there is a next line
-            if (y != (height - 1)) {
-
-                // The parent of the next row is the first pixel of this row.
-                currentParent = firstPixelCurrentRow;
-
-                // Creates the first pixel of the upcoming row, and stores it in firstPixelCurrentRow
-                currentPixel = new Pixel(bufferedImage.getRGB(0, y + 1));
-                firstPixelCurrentRow = currentPixel;
+        byte[] data = dataBuffer.getData();
+        int pixelStride = sampleModel.getPixelStride();
+        int scanlineStride = sampleModel.getScanlineStride();
+        // The band offsets are in color model order: red, green, blue, then alpha
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        int redOffset = bandOffsets[0];
+        int greenOffset = bandOffsets[1];
+        int blueOffset = bandOffsets[2];
+        int alphaOffset = hasAlpha ? bandOffsets[3] : 0;
+        int firstPixel = dataBuffer.getOffset()
+                - raster.getSampleModelTranslateY() * scanlineStride
+                - raster.getSampleModelTranslateX() * pixelStride;
 
-                // Resets previousPixel for the next row.
-                previousPixel = null;
+        for (int y = 0; y < height; y++) {
+            int from = firstPixel + y * scanlineStride;
+            int to = y * stride;
+            for (int x = 0; x < width; x++, from += pixelStride) {
+                int alpha = hasAlpha ? data[from + alphaOffset] & CHANNEL_MASK : CHANNEL_MASK;
+                pixels[to + x] = (alpha << ALPHA_SHIFT)
+                        | ((data[from + redOffset] & CHANNEL_MASK) << RED_SHIFT)
+                        | ((data[from + greenOffset] & CHANNEL_MASK) << GREEN_SHIFT)
+                        | (data[from + blueOffset] & CHANNEL_MASK);
             }
-
         }
+        return true;
     }
 
     /**
@@ -402,13 +691,8 @@ public class ImageGraph {
         // creating a new file
         File newFile = new File("src/main/" + fileName);
 
-        // throw an exception if the width or height is not 0
-        if (width == 0 || height == 0) {
-            throw new IllegalStateException("Cannot save an empty image!!!");
-        }
-
-        // Creates a buffered image to save
-        BufferedImage imageToSave = toBufferedImage();
+        // The image is written before it can be edited again, so it doesn't need to be copied
+        BufferedImage imageToSave = asBufferedImage();
 
         // Save to file and announce that it has been saved, or that it failed to save.
         try {
@@ -421,32 +705,83 @@ public class ImageGraph {
     }
 
     /**
-     * Creates a BufferedImage representation of this image.
+     * Creates a BufferedImage copy of this image.
+     * @return said BufferedImage.
+     */
+    BufferedImage toBufferedImage() {
+        return toBufferedImage(null);
+    }
+
+    /**
+     * Creates a BufferedImage copy of this image, reusing the pixel storage of an image that is no longer needed.
+     * The storage is reused whenever it is large enough, even if that image had a different size.
+     * @param reusableImage An image created by this method earlier, or null to always allocate new storage.
+     *      It must not be used anymore once it has been passed here.
      * @return said BufferedImage.
      */
-    private BufferedImage toBufferedImage() {
-        // Creates a new BufferedImage to save the image data to
-        BufferedImage newBufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    BufferedImage toBufferedImage(BufferedImage reusableImage) {
+        checkNotEmpty();
 
-        // Declaring/Initialising the iterators
-        Pixel tempPixel = head;
-        Pixel nextRowPixel;
+        DataBufferInt dataBuffer = reusableDataBuffer(reusableImage, width * height);
 
+        // The rows are already packed, so each one is copied over all at once.
+        int[] data = dataBuffer.getData();
         for (int y = 0; y < height; y++) {
-            // Setting up the next row iteration.
-            nextRowPixel = tempPixel.child;
+            System.arraycopy(pixels, y * stride, data, y * width, width);
+        }
+        return wrapPixels(dataBuffer, width, height, width);
+    }
+
+    /**
+     * Returns the storage of an image if it can hold the given number of packed colors, or new storage if not.
+     * @param reusableImage An image that isn't needed anymore, or null.
+     * @param size The number of colors the storage must hold.
+     * @return The storage, whose data starts at index 0.
+     */
+    static DataBufferInt reusableDataBuffer(BufferedImage reusableImage, int size) {
+        if (reusableImage != null
+                && reusableImage.getRaster().getDataBuffer() instanceof DataBufferInt reusableBuffer
+                && reusableBuffer.getNumBanks() == 1
+                && reusableBuffer.getOffset() == 0
+                && reusableBuffer.getSize() >= size) {
+            return reusableBuffer;
+        }
+        return new DataBufferInt(size);
+    }
 
-            for (int x = 0; x < width; x++) {
-                newBufferedImage.setRGB(x, y, tempPixel.getRGB());
+    /**
+     * Returns a BufferedImage that shows the pixels of this image without copying them.
+     * It only stays correct until the image is next edited, so it should be used right away, such as to export it.
+     * @return said BufferedImage.
+     */
+    BufferedImage asBufferedImage() {
+        checkNotEmpty();
+        return wrapPixels(new DataBufferInt(pixels, stride * height), width, height, stride);
+    }
 
-                // Iterate to the next pixel in row
-                tempPixel = tempPixel.rightNeighbor;
-            }
+    /**
+     * Wraps packed rows of colors in a TYPE_INT_RGB BufferedImage.
+     * @param dataBuffer The packed rows.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param scanlineStride The distance between the starts of two rows.
+     * @return said BufferedImage.
+     */
+    static BufferedImage wrapPixels(DataBufferInt dataBuffer, int width, int height, int scanlineStride) {
+        SinglePixelPackedSampleModel sampleModel = new SinglePixelPackedSampleModel(
+                DataBuffer.TYPE_INT, width, height, scanlineStride, RGB_COLOR_MODEL.getMasks());
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, dataBuffer, null);
+        return new BufferedImage(RGB_COLOR_MODEL, raster, false, null);
+    }
 
-            // Iterate to the next line
-            tempPixel = nextRowPixel;
+    /**
+     * Throws an exception if the image is empty, since an empty BufferedImage can't be created.
+     */
+    private void checkNotEmpty() {
+        // throw an exception if the width or height is not 0
+        if (width == 0 || height == 0) {
+            throw new IllegalStateException("Cannot save an empty image!!!");
         }
-        return newBufferedImage;
     }
 
     /**
@@ -458,272 +793,1137 @@ public class ImageGraph {
     }
 
     /**
-     * Returns the head that contains the image.
-     * @return The head that contains the image.
+     * Returns the height of the image.
+     * @return The height of the image, in pixels.
      */
-    public Pixel getHead() {
-        return head;
+    public int getHeight() {
+        return height;
     }
 
     /**
-     * Finds the lowest energy seam that divides the image vertically.
-     * @param energyFormula The formula to determine the cost of a seam.
-     * @return The seam with the least cost as defined by that formula.
+     * Returns roughly how many bytes an ImageGraph of the given size takes on the heap while it is carved
+     * with one energy formula: its pixels, the formula's energies and kept seam costs, and the search buffers.
+     * The image it is built from isn't counted.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return The estimated size, in bytes.
      */
-    public SeamNode findSeam(EnergyFormula energyFormula) {
-        // For every pixel, find the cheapest cost of its upper neighbors and update the pointers accordingly
+    public static long estimateCarvingBytes(int width, int height) {
+        // An int per pixel, a float each for its energy and seam cost, and a byte each for two relationships
+        long bytesPerPixel = Integer.BYTES + 2 * Float.BYTES + 2;
+        return (long) width * height * bytesPerPixel;
+    }
 
-        // The seams from the previous row
-        ArrayList<SeamNode> previousSeams = new ArrayList<>();
+    /**
+     * Returns the distance between the starts of two rows of pixels.
+     * @return The stride of the pixel storage.
+     */
+    int getStride() {
+        return stride;
+    }
 
-        // The seams for the current row
-        ArrayList<SeamNode> currentSeams = new ArrayList<>();
+    /**
+     * Returns the number of pixels the storage has room for, as wide as stride and as high as the original image.
+     * @return The number of pixels.
+     */
+    int getPixelCapacity() {
+        return pixels.length;
+    }
 
-        // Setting up the iteration
-        Pixel currentPixel = head;
-        Pixel nextRowPixel = head.child;
+    /**
+     * Returns the pool seam searches run on.
+     * @return The pool, or null if searches use one thread.
+     */
+    ForkJoinPool getSearchPool() {
+        return searchPool;
+    }
 
-        // For every pixel in the first row, create a new SeamNode()
-        for (int col = 0; col < width; col++) {
-            previousSeams.add(new SeamNode(currentPixel, energyFormula));
-            currentPixel = currentPixel.rightNeighbor;
-        }
+    /**
+     * Returns the number of rows the pixel storage has room for. This is the original height of the image.
+     * @return The number of rows.
+     */
+    private int rowCapacity() {
+        return pixels.length / stride;
+    }
 
-        // For all rows after the first
-        for (int row = 1; row < height; row++) {
+    /**
+     * Returns the number of lines a seam in the given direction crosses: the rows, or the columns.
+     * @param direction The direction of the seam.
+     * @return The number of lines.
+     */
+    int lineCount(Direction direction) {
+        return direction == Direction.VERTICAL ? height : width;
+    }
 
-            // iteration
-            currentPixel = nextRowPixel;
-            nextRowPixel = currentPixel.child;
+    /**
+     * Returns the number of positions in each line a seam in the given direction crosses.
+     * @param direction The direction of the seam.
+     * @return The length of each line.
+     */
+    int lineLength(Direction direction) {
+        return direction == Direction.VERTICAL ? width : height;
+    }
 
-            for (int col = 0; col < width; col++) {
+    /**
+     * Returns the distance in the pixels between the starts of two lines in the given direction.
+     * @param direction The direction of the seam.
+     * @return The distance between two lines.
+     */
+    private int lineStep(Direction direction) {
+        return direction == Direction.VERTICAL ? stride : 1;
+    }
 
-                // The currently best seam to reach the pixel. The one right above the current node by default.
-                SeamNode bestSeam = previousSeams.get(col);
-                double bestValue = bestSeam.getCost();
-                SeamNode.PreviousSeamRelationship relationship = SeamNode.PreviousSeamRelationship.STRAIGHT_UP;
+    /**
+     * Returns the distance in the pixels between two neighboring positions of a line in the given direction.
+     * @param direction The direction of the seam.
+     * @return The distance between two positions.
+     */
+    private int positionStep(Direction direction) {
+        return direction == Direction.VERTICAL ? 1 : stride;
+    }
 
+    /**
+     * Returns the index in the pixels of a position in a line.
+     * @param line The line: the row for a vertical seam, or the column for a horizontal one.
+     * @param position The position in the line.
+     * @param direction The direction of the seam.
+     * @return The index of the pixel.
+     */
+    int indexOf(int line, int position, Direction direction) {
+        return direction == Direction.VERTICAL ? line * stride + position : position * stride + line;
+    }
 
-                // Check if the top left and top right have better seams
-                if (col > 0 && previousSeams.get(col - 1).getCost() < bestValue) {
-                    bestSeam = previousSeams.get(col - 1);
-                    bestValue = bestSeam.getCost();
-                    relationship = SeamNode.PreviousSeamRelationship.DIAGONAL_LEFT;
-                }
-                if (col < width - 1 && previousSeams.get(col + 1).getCost() < bestValue) {
-                    bestSeam = previousSeams.get(col + 1);
-                    bestValue = previousSeams.get(col + 1).getCost();
-                    relationship = SeamNode.PreviousSeamRelationship.DIAGONAL_RIGHT;
-                }
+    /**
+     * Returns the color of the pixel at the given position.
+     * @param x The column of the pixel. Must be less than the width.
+     * @param y The row of the pixel. Must be less than the height.
+     * @return The integer representation of the pixel's color.
+     */
+    public int getRGB(int x, int y) {
+        Objects.checkIndex(x, width);
+        return pixels[y * stride + x];
+    }
 
-                // Adds the newly formed seam to the list of current seams
-                currentSeams.add(new SeamNode(currentPixel, bestSeam, relationship, energyFormula));
+    /**
+     * Returns the brightness of the pixel at the given position.
+     * @param x The column of the pixel. Must be less than the width.
+     * @param y The row of the pixel. Must be less than the height.
+     * @return The brightness of the pixel.
+     */
+    public double getBrightness(int x, int y) {
+        return Pixel.brightnessOf(getRGB(x, y));
+    }
 
-                // Iterate
-                currentPixel = currentPixel.rightNeighbor;
-            }
-            previousSeams = currentSeams;
-            currentSeams = new ArrayList<>();
+    /**
+     * Finds the brightness of every pixel in a row.
+     * @param y The row to find the brightness of.
+     * @param brightness Where to store the brightness of each pixel. Must hold at least the width of the image.
+     */
+    public void getBrightnessRow(int y, double[] brightness) {
+        int rowStart = y * stride;
+        for (int x = 0; x < width; x++) {
+            brightness[x] = Pixel.brightnessOf(pixels[rowStart + x]);
+        }
+    }
+
+    /**
+     * Finds the lowest energy seam that divides the image vertically.
+     * Only the cheapest seam is built; the search itself runs on buffers reused between calls.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @return The seam with the least cost as defined by that formula.
+     */
+    public SeamNode findSeam(EnergyFormula energyFormula) {
+        return findSeamNode(energyFormula, Direction.VERTICAL);
+    }
+
+    /**
+     * Finds the lowest energy seam that divides the image vertically while staying inside a range of columns.
+     * Only the pixels in the range are searched, and only their energies are found if none are cached yet,
+     * so the search takes time in proportion to the area of the range rather than of the whole image.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @param firstColumn The first column the seam may cross.
+     * @param endColumn The column after the last one the seam may cross.
+     * @return The seam inside the range with the least cost as defined by that formula.
+     */
+    public SeamNode findSeam(EnergyFormula energyFormula, int firstColumn, int endColumn) {
+        return findSeam(energyFormula, firstColumn, endColumn, 0, 0);
+    }
 
+    /**
+     * Finds the lowest energy seam that divides the image vertically while staying inside a range of columns,
+     * and that runs straight down through a range of rows, crossing all of them at the same column.
+     * Only the pixels in the range of columns are searched. If the energies of the formula are not cached yet,
+     * only the energies of those pixels are found, and they are not cached. They are still the energies of the
+     * whole image: a formula such as BrightnessEnergy reads the neighbors of the pixels at the edges of the range,
+     * one column outside it, so the seam is the same one the cached energies give.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @param firstColumn The first column the seam may cross.
+     * @param endColumn The column after the last one the seam may cross.
+     * @param firstStraightRow The first row the seam must cross straight.
+     * @param endStraightRow The row after the last one the seam must cross straight,
+     *                       or firstStraightRow if it may bend anywhere.
+     * @return The seam inside the range with the least cost as defined by that formula.
+     */
+    public SeamNode findSeam(EnergyFormula energyFormula, int firstColumn, int endColumn,
+                             int firstStraightRow, int endStraightRow) {
+        if (firstColumn < 0 || endColumn > width || firstColumn >= endColumn) {
+            throw new IllegalArgumentException("Cannot search columns " + firstColumn + " to " + endColumn
+                    + " of an image " + width + " pixels wide");
+        }
+        if (firstStraightRow < 0 || endStraightRow > height || firstStraightRow > endStraightRow) {
+            throw new IllegalArgumentException("Cannot keep a seam straight from row " + firstStraightRow
+                    + " to " + endStraightRow + " of an image " + height + " pixels high");
         }
 
+        // The energy of pixel (col, row) is at row * energyStride + col - energyOffset
+        ensureSeamBuffers();
+        EnergyMap energyMap = energyMaps.get(energyFormula.getClass());
+        float[] energies;
+        int energyStride;
+        int energyOffset;
+        if (energyMap != null) {
+            energies = energyMap.getEnergies();
+            energyStride = stride;
+            energyOffset = 0;
+        } else {
+            energies = findRegionEnergies(energyFormula, firstColumn, endColumn);
+            energyStride = endColumn - firstColumn;
+            energyOffset = firstColumn;
+        }
+        float[] previousCosts = previousSeamCosts;
+        float[] currentCosts = currentSeamCosts;
+        int lastColumn = endColumn - 1;
 
-        // The bestSeam so far is the first seam in the arraylist
-        SeamNode bestSeam = previousSeams.getFirst();
+        for (int col = firstColumn; col <= lastColumn; col++) {
+            previousCosts[col] = energies[col - energyOffset];
+        }
+        for (int row = 1; row < height; row++) {
+            // Inside the straight rows, every pixel's seam comes from right above it
+            boolean straight = row > firstStraightRow && row < endStraightRow;
+            int rowStart = row * stride;
+            int energyStart = row * energyStride - energyOffset;
+            for (int col = firstColumn; col <= lastColumn; col++) {
+                float bestValue = previousCosts[col];
+                SeamNode.PreviousSeamRelationship relationship = SeamNode.PreviousSeamRelationship.STRAIGHT_UP;
+                if (!straight) {
+                    if (col > firstColumn && previousCosts[col - 1] < bestValue) {
+                        bestValue = previousCosts[col - 1];
+                        relationship = SeamNode.PreviousSeamRelationship.DIAGONAL_LEFT;
+                    }
+                    if (col < lastColumn && previousCosts[col + 1] < bestValue) {
+                        bestValue = previousCosts[col + 1];
+                        relationship = SeamNode.PreviousSeamRelationship.DIAGONAL_RIGHT;
+                    }
+                }
+                currentCosts[col] = energies[energyStart + col] + bestValue;
+                seamRelationships[rowStart + col] = (byte) relationship.ordinal();
+            }
 
+            float[] swap = previousCosts;
+            previousCosts = currentCosts;
+            currentCosts = swap;
+        }
 
-        // For every seam in the seam node, compare the cost of the current seam to that of the best
-        // seam to determine which seam has the lowest cost. If so, update the best seam
-        // and return it at the end of the loop.
-        for (SeamNode seam : previousSeams) {
-            if (seam.cost < bestSeam.cost) {
-                bestSeam = seam;
+        int bestColumn = firstColumn;
+        for (int col = firstColumn + 1; col <= lastColumn; col++) {
+            if (previousCosts[col] < previousCosts[bestColumn]) {
+                bestColumn = col;
             }
         }
+        if (energyMap != null) {
+            return buildSeam(bestColumn, energies, seamRelationships, Direction.VERTICAL);
+        }
 
-        return bestSeam;
+        // The same as buildSeam, reading the energies of the region
+        int[] columns = traceSeam(bestColumn, seamRelationships, Direction.VERTICAL);
+        float cost = energies[columns[0] - firstColumn];
+        SeamNode seam = new SeamNode(pixels[columns[0]], columns[0], null,
+                SeamNode.PreviousSeamRelationship.STRAIGHT_UP, cost);
+        for (int row = 1; row < height; row++) {
+            int col = columns[row];
+            int index = row * stride + col;
+            cost = energies[row * energyStride + col - firstColumn] + cost;
+            seam = new SeamNode(pixels[index], col, seam, RELATIONSHIPS[seamRelationships[index]], cost);
+        }
+        return seam;
     }
 
     /**
-     * Highlights the given seam with a supplied color.
-     * Does not actually change the given seam, but replaces it with a new seam of a single color of pixels.
-     * @param seam The seam to be highlighted.
-     * @param color The color to assign each node in the seam to.
-     * @return The new, highlighted seam.
+     * Finds the energy of every pixel in a range of columns, without caching them.
+     * The energy formula may read the columns on either side of the range, as it would for the whole image.
+     * @param energyFormula The formula to find the energies with.
+     * @param firstColumn The first column of the range.
+     * @param endColumn The column after the last one of the range.
+     * @return The energies, packed row by row with no gaps. This is a shared buffer.
      */
-    public SeamNode highlightSeam(SeamNode seam, Color color) {
-        // Handling two seams: the currentSeam, which is the old seam being replaced
-        //   and the currentNewSeam, which is the seam containing all the new pixels of the given color.
-
-        // Stores the current node of the original seam
-        SeamNode currentSeam = seam;
+    private float[] findRegionEnergies(EnergyFormula energyFormula, int firstColumn, int endColumn) {
+        int regionWidth = endColumn - firstColumn;
+        if (regionEnergies == null || regionEnergies.length < regionWidth * height) {
+            regionEnergies = new float[regionWidth * height];
+        }
+        int index = 0;
+        for (int row = 0; row < height; row++) {
+            for (int col = firstColumn; col < endColumn; col++) {
+                regionEnergies[index++] = (float) energyFormula.energyFormula(this, col, row);
+            }
+        }
+        return regionEnergies;
+    }
 
-        // Stores the current node of the new, single-color seam.
-        SeamNode currentNewSeam = new SeamNode(new Pixel(color.getRGB()), null, currentSeam.getRelationship(), currentSeam.getCost());
+    /**
+     * Finds the lowest energy seam that divides the image horizontally, running from the left edge to the right.
+     * The search is the same as findSeam's, on a transposed view of the image. It shares the cached energies
+     * with vertical searches, but always finds every seam cost, even when searching incrementally.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @return The horizontal seam with the least cost as defined by that formula.
+     */
+    public SeamNode findHorizontalSeam(EnergyFormula energyFormula) {
+        return findSeamNode(energyFormula, Direction.HORIZONTAL);
+    }
 
-        // Stores the last created node of the new seam
-        SeamNode previousNewSeamNode = null;
+    /**
+     * Finds the lowest energy seam that divides the image vertically, as a compact Seam.
+     * The search is the same as findSeam's.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @return The seam with the least cost as defined by that formula.
+     */
+    public Seam findCompactSeam(EnergyFormula energyFormula) {
+        return findCompactSeam(energyFormula, Direction.VERTICAL);
+    }
 
-        // Stores the first node of the new seam, so we can reference this seam later
-        // (like the root of a linked list; it is at the bottom of the image)
-        SeamNode firstSeamNode = currentNewSeam;
+    /**
+     * Finds the lowest energy seam that divides the image horizontally, as a compact Seam.
+     * The search is the same as findHorizontalSeam's.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @return The horizontal seam with the least cost as defined by that formula.
+     */
+    public Seam findCompactHorizontalSeam(EnergyFormula energyFormula) {
+        return findCompactSeam(energyFormula, Direction.HORIZONTAL);
+    }
 
-        // This traverses the original seam from the bottom to the top
-        while (currentSeam != null) {
-            if (previousNewSeamNode != null) {
-                // For all nodes except the topmost
-                previousNewSeamNode.setPreviousNode(currentNewSeam);
-            }
+    /**
+     * Finds the cheapest seams that divide the image vertically, one ending at each of the given number of columns
+     * of the last row. See findSeams(int, EnergyFormula, boolean).
+     * @param count The most seams to find, at least 1.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @return The seams, cheapest first.
+     */
+    public List<Seam> findSeams(int count, EnergyFormula energyFormula) {
+        return findSeams(count, energyFormula, false);
+    }
+
+    /**
+     * Finds the cheapest seams that divide the image vertically, each ending at a different column of the
+     * last row. All of them come from a single search, the same one findCompactSeam runs (incremental if the
+     * graph searches incrementally): the cheapest seam ending at every column is followed back up from the
+     * cheapest ends, so finding several seams costs little more than finding one.
+     * Seams ending at different columns may still merge higher up. If they must not share any pixel,
+     * a seam that runs into a cheaper one is skipped, and the next cheapest end is tried instead.
+     * @param count The most seams to find, at least 1.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @param disjoint Whether no two seams may share a pixel.
+     * @return The seams, cheapest first. The first is the seam findCompactSeam finds. There are fewer than count
+     *         if the image is narrower, or if not enough seams avoid each other.
+     */
+    public List<Seam> findSeams(int count, EnergyFormula energyFormula, boolean disjoint) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Cannot find " + count + " seams");
+        }
+        // The costs of the last row, from the same search findCompactSeam runs
+        EnergyMap energyMap = getEnergyMap(energyFormula);
+        float[] costs;
+        int costOffset;
+        if (incrementalSearch) {
+            energyMap.updateSeamCosts();
+            costs = energyMap.getSeamCosts();
+            costOffset = (height - 1) * stride;
+        } else {
+            costs = findAllSeamCosts(energyMap, Direction.VERTICAL);
+            costOffset = 0;
+        }
 
-            // Variables that store the current pixel of the original seam and the new seam
-            Pixel currentPixel = currentSeam.getPixel();
-            Pixel currentNewPixel = currentNewSeam.getPixel();
+        List<Seam> seams = new ArrayList<>(Math.min(count, width));
+        for (int[] columns : SeamSelector.selectSeams(this, costs, costOffset,
+                searchRelationships(energyMap, Direction.VERTICAL), stride, count, disjoint)) {
+            seams.add(buildCompactSeam(columns, energyMap.getEnergies(), Direction.VERTICAL));
+        }
+        return seams;
+    }
+
+    /**
+     * Finds a low energy seam that divides the image vertically much faster than findCompactSeam on large images,
+     * without finding the cost of every seam. The energies are averaged into a pyramid of smaller and smaller
+     * images, down to one narrow enough to search all of. The seam found there is then refined one level at a time,
+     * searching only a band of columns around where it lands in the next larger level, until the full image.
+     * The seam usually costs the same or a little more than the cheapest one. With a band as wide as the image,
+     * it is the seam findCompactSeam finds.
+     * The pyramid is kept between searches with the cached energies, and updated around each vertical seam
+     * that is removed or inserted, so only the first search after the energies are found builds it.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @param bandWidth The number of columns searched on either side of the coarser seam at every level, at least 0.
+     * @return A low cost seam, as defined by that formula.
+     */
+    public Seam findApproximateSeam(EnergyFormula energyFormula, int bandWidth) {
+        if (bandWidth < 0) {
+            throw new IllegalArgumentException("The band width must be at least 0, not " + bandWidth);
+        }
+        EnergyMap energyMap = getEnergyMap(energyFormula);
+        int[] columns = energyMap.getPyramid().findSeam(bandWidth);
+        return buildCompactSeam(columns, energyMap.getEnergies(), Direction.VERTICAL);
+    }
 
-            // Updating pointers so that the pixels in the graph point to the currentNewPixel, rather than the old pixel.
-            // It is possible and necessary to update a neighbor's pointer only when the neighbor is not null,
-            //    so we check if each neighbor is null before continuing
-            if (currentPixel.rightNeighbor != null) {
-                currentPixel.rightNeighbor.leftNeighbor = currentNewPixel;
+    /**
+     * Finds the lowest energy seam in the given direction, and builds it as a chain of nodes.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @param direction The direction of the seam.
+     * @return The seam with the least cost as defined by that formula.
+     */
+    private SeamNode findSeamNode(EnergyFormula energyFormula, Direction direction) {
+        EnergyMap energyMap = getEnergyMap(energyFormula);
+        int bottomColumn = searchSeam(energyMap, direction);
+        return buildSeam(bottomColumn, energyMap.getEnergies(), searchRelationships(energyMap, direction), direction);
+    }
+
+    /**
+     * Finds the lowest energy seam in the given direction, as a compact Seam.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @param direction The direction of the seam.
+     * @return The seam with the least cost as defined by that formula.
+     */
+    private Seam findCompactSeam(EnergyFormula energyFormula, Direction direction) {
+        EnergyMap energyMap = getEnergyMap(energyFormula);
+        int bottomColumn = searchSeam(energyMap, direction);
+        int lineCount = lineCount(direction);
+        int[] columns = Arrays.copyOf(traceSeam(bottomColumn, searchRelationships(energyMap, direction), direction),
+                lineCount);
+        return buildCompactSeam(columns, energyMap.getEnergies(), direction);
+    }
+
+    /**
+     * Builds a compact Seam at the given positions, with the colors of the pixels it covers.
+     * @param columns The position of the seam in each line. The seam keeps the array.
+     * @param energies The energies used by the search, to find the cost of the seam.
+     * @param direction The direction the seam runs in.
+     * @return The seam.
+     */
+    private Seam buildCompactSeam(int[] columns, float[] energies, Direction direction) {
+        // Adding the costs from the top down, in the same order as the search, gives the same cost it found
+        int lineCount = lineCount(direction);
+        int[] colors = new int[lineCount];
+        float cost = 0;
+        for (int line = 0; line < lineCount; line++) {
+            int index = indexOf(line, columns[line], direction);
+            colors[line] = pixels[index];
+            cost = energies[index] + cost;
+        }
+        return new Seam(columns, colors, cost, direction);
+    }
+
+    /**
+     * Searches for the lowest energy seam in the given direction: incrementally if the graph searches
+     * incrementally and the seam is vertical, or by finding the cost of every seam otherwise.
+     * @param energyMap The cached energies of the formula to find the seam with.
+     * @param direction The direction of the seam.
+     * @return The position in the last line where the cheapest seam ends.
+     */
+    private int searchSeam(EnergyMap energyMap, Direction direction) {
+        if (incrementalSearch && direction == Direction.VERTICAL) {
+            return energyMap.updateSeamCosts();
+        }
+        return searchAllSeams(energyMap, direction);
+    }
+
+    /**
+     * Returns where searchSeam recorded the relationship of every pixel with the best pixel before it.
+     * @param energyMap The cached energies of the formula the seam was found with.
+     * @param direction The direction of the seam.
+     * @return The relationships recorded by the last search.
+     */
+    private byte[] searchRelationships(EnergyMap energyMap, Direction direction) {
+        return incrementalSearch && direction == Direction.VERTICAL ? energyMap.getRelationships() : seamRelationships;
+    }
+
+    /**
+     * Finds the lowest energy seam in the given direction, finding the cost of every seam.
+     * @param energyMap The cached energies of the formula to find the seam with.
+     * @param direction The direction of the seam.
+     * @return The position in the last line where the cheapest seam ends.
+     */
+    private int searchAllSeams(EnergyMap energyMap, Direction direction) {
+        float[] lastCosts = findAllSeamCosts(energyMap, direction);
+
+        // The best seam ends at the first pixel with the lowest cost in the last line
+        int bestColumn = 0;
+        for (int col = 1; col < lineLength(direction); col++) {
+            if (lastCosts[col] < lastCosts[bestColumn]) {
+                bestColumn = col;
             }
-            if (currentPixel.leftNeighbor != null) {
-                currentPixel.leftNeighbor.rightNeighbor = currentNewPixel;
+        }
+        return bestColumn;
+    }
+
+    /**
+     * Finds the cost of every seam in the given direction, recording the relationships of every pixel
+     * in seamRelationships.
+     * @param energyMap The cached energies of the formula to find the seams with.
+     * @param direction The direction of the seams.
+     * @return The cheapest cost of a seam ending at each position of the last line. This is one of the
+     *         search buffers, so it is only valid until the next search.
+     */
+    private float[] findAllSeamCosts(EnergyMap energyMap, Direction direction) {
+        // For every pixel, find the cheapest cost of its upper neighbors and remember which one it was
+        ensureSeamBuffers();
+        float[] energies = energyMap.getEnergies();
+        int lineCount = lineCount(direction);
+        int lineLength = lineLength(direction);
+        int positionStep = positionStep(direction);
+
+        // The cheapest cost of a seam ending at each pixel in the previous line
+        float[] previousCosts = previousSeamCosts;
+
+        // The cheapest cost of a seam ending at each pixel in the current line
+        float[] currentCosts = currentSeamCosts;
+
+        // For every pixel in the first line, the seam is only that pixel
+        for (int col = 0; col < lineLength; col++) {
+            previousCosts[col] = energies[col * positionStep];
+        }
+
+        // For all lines after the first
+        if (searchPool != null && lineLength >= 2 * PARALLEL_CHUNK_WIDTH) {
+            previousCosts = searchPool.invoke(
+                    new ParallelSeamSearch(energies, previousCosts, currentCosts, direction));
+        } else {
+            for (int line = 1; line < lineCount; line++) {
+                searchRow(energies, previousCosts, currentCosts, direction, line, 0, lineLength);
+
+                // The current line becomes the previous line, and its old buffer is reused for the next line
+                float[] swap = previousCosts;
+                previousCosts = currentCosts;
+                currentCosts = swap;
             }
-            if (currentPixel.parent != null) {
-                currentPixel.parent.child = currentNewPixel;
+        }
+        return previousCosts;
+    }
+
+    /**
+     * Finds the cheapest seam ending at each pixel of part of a line, given the cheapest seams ending in the line
+     * before it. For a vertical seam the lines are rows, and for a horizontal seam they are columns.
+     * @param energies The energy of every pixel.
+     * @param previousCosts The cheapest cost of a seam ending at each pixel in the line before.
+     * @param currentCosts Where to store the cheapest cost of a seam ending at each pixel in this line.
+     * @param direction The direction of the seam.
+     * @param line The line to search.
+     * @param firstCol The first position to search.
+     * @param endCol The position after the last position to search.
+     */
+    private void searchRow(float[] energies, float[] previousCosts, float[] currentCosts,
+                           Direction direction, int line, int firstCol, int endCol) {
+        int lineStart = line * lineStep(direction);
+        int positionStep = positionStep(direction);
+        int lastCol = lineLength(direction) - 1;
+
+        for (int col = firstCol; col < endCol; col++) {
+
+            // The currently best seam to reach the pixel. The one right above the current node by default.
+            float bestValue = previousCosts[col];
+            SeamNode.PreviousSeamRelationship relationship = SeamNode.PreviousSeamRelationship.STRAIGHT_UP;
+
+            // Check if the top left and top right have better seams
+            if (col > 0 && previousCosts[col - 1] < bestValue) {
+                bestValue = previousCosts[col - 1];
+                relationship = SeamNode.PreviousSeamRelationship.DIAGONAL_LEFT;
             }
-            if (currentPixel.child != null) {
-                currentPixel.child.parent = currentNewPixel;
+            if (col < lastCol && previousCosts[col + 1] < bestValue) {
+                bestValue = previousCosts[col + 1];
+                relationship = SeamNode.PreviousSeamRelationship.DIAGONAL_RIGHT;
             }
 
-            // Make sure currentNewPixel points to its neighbors
-            currentNewPixel.rightNeighbor = currentPixel.rightNeighbor;
-            currentNewPixel.leftNeighbor = currentPixel.leftNeighbor;
-            currentNewPixel.parent = currentPixel.parent;
-            currentNewPixel.child = currentPixel.child;
+            int index = lineStart + col * positionStep;
+            currentCosts[col] = energies[index] + bestValue;
+            seamRelationships[index] = (byte) relationship.ordinal();
+        }
+    }
 
-            // If the head is replaced, updates the head pointer accordingly.
-            if (head.equals(currentPixel)) {
-                head = currentNewPixel;
-            }
+    /**
+     * Sets how many threads seam searches may use. With more than one, the rows of a search are split into
+     * chunks of columns that are searched at the same time, and new energy maps are found a block of rows at a time.
+     * Images too narrow to split into chunks of at least 512 columns are still searched on one thread.
+     * @param parallelism The number of threads to use. 1 searches on the calling thread only.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be at least 1, not " + parallelism);
+        }
+        if (searchPool != null) {
+            searchPool.shutdown();
+        }
+        this.parallelism = parallelism;
+        searchPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
 
-            /// ----- Iterating and setting up the next run of the loop ----- \\\
+    /**
+     * Sets whether findSeam should keep the cost of every seam between searches, and only find the costs
+     * that changed since the last search. This is much faster when many seams are removed one after another,
+     * but keeps 5 more bytes per pixel for every energy formula used.
+     * @param incrementalSearch Whether findSeam should search incrementally.
+     */
+    public void setIncrementalSearch(boolean incrementalSearch) {
+        this.incrementalSearch = incrementalSearch;
+    }
 
-            // previous new seamNode will be the old current seamNode
-            previousNewSeamNode = currentNewSeam;
+    /**
+     * Returns the cached energies of the image for the given formula, finding them if they are not cached yet.
+     * @param energyFormula The formula to find the energies with.
+     * @return The cache of the energies.
+     */
+    private EnergyMap getEnergyMap(EnergyFormula energyFormula) {
+        return energyMaps.computeIfAbsent(energyFormula.getClass(), key -> new EnergyMap(this, energyFormula));
+    }
+
+    /**
+     * Makes sure the buffers used by findSeam are allocated.
+     * They are big enough for a search in either direction of the largest the image can be,
+     * so they are only allocated once, and reused by every later search.
+     */
+    private void ensureSeamBuffers() {
+        if (seamRelationships == null) {
+            int longestLine = Math.max(stride, rowCapacity());
+            previousSeamCosts = new float[longestLine];
+            currentSeamCosts = new float[longestLine];
+            seamRelationships = new byte[pixels.length];
+        }
+    }
+
+    /**
+     * Builds the seam ending at the given position of the last line, following the relationships
+     * recorded by the last search back up to the first line.
+     * @param bottomColumn The position of the seam in the last line.
+     * @param energies The energies used by the search, to find the cost of each node.
+     * @param relationships The relationships recorded by the search.
+     * @param direction The direction the seam runs in.
+     * @return The first (bottom, or right for a horizontal seam) node of the seam.
+     */
+    private SeamNode buildSeam(int bottomColumn, float[] energies, byte[] relationships, Direction direction) {
+        int[] columns = traceSeam(bottomColumn, relationships, direction);
+
+        // Build the nodes from the top down, so every node can point to the one above it.
+        // Adding the costs in the same order as the search gives the same costs it found.
+        int index = indexOf(0, columns[0], direction);
+        float cost = energies[index];
+        SeamNode seam = new SeamNode(pixels[index], columns[0], null,
+                SeamNode.PreviousSeamRelationship.STRAIGHT_UP, cost);
+        for (int line = 1; line < lineCount(direction); line++) {
+            int col = columns[line];
+            index = indexOf(line, col, direction);
+            cost = energies[index] + cost;
+            seam = new SeamNode(pixels[index], col, seam, RELATIONSHIPS[relationships[index]], cost);
+        }
+        return seam;
+    }
+
+    /**
+     * Finds the position of the seam ending at the given position of the last line in every line,
+     * by walking up from the bottom following the relationships recorded by the last search.
+     * @param bottomColumn The position of the seam in the last line.
+     * @param relationships The relationships recorded by the search.
+     * @param direction The direction the seam runs in.
+     * @return The position of the seam in each line, indexed by line. This is a shared buffer.
+     */
+    private int[] traceSeam(int bottomColumn, byte[] relationships, Direction direction) {
+        int[] columns = getSeamColumnsBuffer();
+        int lastLine = lineCount(direction) - 1;
+        columns[lastLine] = bottomColumn;
+        for (int line = lastLine; line > 0; line--) {
+            int col = columns[line];
+            columns[line - 1] = col + columnOffset(RELATIONSHIPS[relationships[indexOf(line, col, direction)]]);
+        }
+        return columns;
+    }
+
+    /**
+     * Returns the buffer used to store the position of a seam in each line, allocating it the first time.
+     * @return The buffer, with one entry for each line a seam in either direction can cross.
+     */
+    private int[] getSeamColumnsBuffer() {
+        if (seamColumns == null) {
+            seamColumns = new int[Math.max(stride, rowCapacity())];
+        }
+        return seamColumns;
+    }
+
+    /**
+     * Returns the buffer used to store the color of a seam's pixel in each line, allocating it the first time.
+     * @return The buffer, with one entry for each line a seam in either direction can cross.
+     */
+    private int[] getSeamColorsBuffer() {
+        if (seamColors == null) {
+            seamColors = new int[Math.max(stride, rowCapacity())];
+        }
+        return seamColors;
+    }
+
+    /**
+     * Finds the position the given seam crosses each line at.
+     * @param seam The seam to walk.
+     * @param direction The direction the seam runs in.
+     * @return The position of the seam in each line, indexed by line. This is a shared buffer.
+     */
+    private int[] getSeamColumns(SeamNode seam, Direction direction) {
+        int[] columns = getSeamColumnsBuffer();
+        SeamNode currentSeam = seam;
+        for (int line = lineCount(direction) - 1; currentSeam != null; line--) {
+            columns[line] = currentSeam.getColumn();
             currentSeam = currentSeam.getPreviousNode();
-            if (currentSeam != null) {
-                // If it is not the last iteration
-                currentNewSeam = new SeamNode(new Pixel(color.getRGB()), null, currentSeam.getRelationship(), currentSeam.getCost());
+        }
+        return columns;
+    }
+
+    /**
+     * Recomputes the cached energies around a seam that was just edited.
+     * @param columns The position of the seam in each line.
+     * @param direction The direction the seam runs in.
+     */
+    private void refreshEnergyMaps(int[] columns, Direction direction) {
+        for (EnergyMap energyMap : energyMaps.values()) {
+            energyMap.refresh(columns, direction);
+        }
+    }
+
+    /**
+     * Finds how far the column of the previous node is from the column of a node with the given relationship.
+     * @param relationship The relationship between a node and its previous node.
+     * @return -1 for a diagonal left, 1 for a diagonal right, and 0 for straight up.
+     */
+    static int columnOffset(SeamNode.PreviousSeamRelationship relationship) {
+        return switch (relationship) {
+            case DIAGONAL_LEFT -> -1;
+            case DIAGONAL_RIGHT -> 1;
+            case STRAIGHT_UP -> 0;
+        };
+    }
+
+    /**
+     * Highlights the given seam with a supplied color.
+     * Does not actually change the given seam, but replaces it with a new seam of a single color of pixels.
+     * @param seam The seam to be highlighted.
+     * @param color The color to assign each node in the seam to.
+     * @return The new, highlighted seam.
+     */
+    public SeamNode highlightSeam(SeamNode seam, Color color) {
+        return highlightSeam(seam, color, Direction.VERTICAL);
+    }
+
+    /**
+     * Highlights the given horizontal seam with a supplied color.
+     * Does not actually change the given seam, but replaces it with a new seam of a single color of pixels.
+     * @param seam The horizontal seam to be highlighted.
+     * @param color The color to assign each node in the seam to.
+     * @return The new, highlighted seam.
+     */
+    public SeamNode highlightHorizontalSeam(SeamNode seam, Color color) {
+        return highlightSeam(seam, color, Direction.HORIZONTAL);
+    }
+
+    /**
+     * Highlights the given compact seam with a supplied color.
+     * The seam itself is not changed, and still holds the colors the highlight covers,
+     * so inserting it with insertSeam(seam, false) removes the highlight again.
+     * @param seam The seam to be highlighted.
+     * @param color The color to assign each pixel of the seam to.
+     * @return The seam, unedited.
+     */
+    public Seam highlightSeam(Seam seam, Color color) {
+        int rgb = color.getRGB();
+        for (int line = 0; line < seam.length(); line++) {
+            pixels[indexOf(line, seam.getColumn(line), seam.getDirection())] = rgb;
+        }
+        refreshEnergyMaps(seam.getColumns(), seam.getDirection());
+        return seam;
+    }
+
+    /**
+     * Highlights the given seam with a supplied color.
+     * @param seam The seam to be highlighted.
+     * @param color The color to assign each node in the seam to.
+     * @param direction The direction the seam runs in.
+     * @return The new, highlighted seam.
+     */
+    private SeamNode highlightSeam(SeamNode seam, Color color, Direction direction) {
+        int rgb = color.getRGB();
+
+        // Stores the current node of the original seam
+        SeamNode currentSeam = seam;
+
+        // Stores the last created node of the new seam
+        SeamNode previousNewSeamNode = null;
+
+        // Stores the first node of the new seam, so we can reference this seam later
+        // (like the root of a linked list; it is at the bottom of the image)
+        SeamNode firstSeamNode = null;
+
+        // This traverses the original seam from the bottom to the top
+        for (int line = lineCount(direction) - 1; currentSeam != null; line--) {
+            // Recolor the pixel in the image
+            pixels[indexOf(line, currentSeam.getColumn(), direction)] = rgb;
+
+            SeamNode currentNewSeam = new SeamNode(
+                    rgb, currentSeam.getColumn(), null, currentSeam.getRelationship(), currentSeam.getCost()
+            );
+            if (previousNewSeamNode != null) {
+                // For all nodes except the bottommost
+                previousNewSeamNode.setPreviousNode(currentNewSeam);
+            } else {
+                firstSeamNode = currentNewSeam;
             }
+
+            previousNewSeamNode = currentNewSeam;
+            currentSeam = currentSeam.getPreviousNode();
         }
 
+        refreshEnergyMaps(getSeamColumns(seam, direction), direction);
         return firstSeamNode;
     }
 
     /**
-     * Remove a seam from the graph by removing all pointers to its pixels within the graph.
+     * Remove a seam from the graph by shifting the rest of each row over the seam's pixel.
      * @param seam The seam to remove.
      * @return The removed seam. This is just the parameter, and should be unedited.
      */
     public SeamNode removeSeam(SeamNode seam) {
-        SeamNode currentSeam = seam;
+        removeColumns(getSeamColumns(seam, Direction.VERTICAL));
+        return seam;
+    }
 
-        while (currentSeam != null) {
-            // Iterate
-            Pixel currentPixel = currentSeam.getPixel();
+    /**
+     * Remove a horizontal seam from the graph by shifting the rest of each column up over the seam's pixel.
+     * @param seam The horizontal seam to remove.
+     * @return The removed seam. This is just the parameter, and should be unedited.
+     */
+    public SeamNode removeHorizontalSeam(SeamNode seam) {
+        removeRows(getSeamColumns(seam, Direction.HORIZONTAL));
+        return seam;
+    }
 
-            // If we are removing the head, shift the head pointer accordingly
-            if (head.equals(currentPixel)) {
-                head = currentPixel.rightNeighbor;
-            }
+    /**
+     * Removes a compact seam from the graph, in whichever direction it runs.
+     * Only the positions of the seam are used, so it removes whatever pixels are there now,
+     * such as a highlight of the seam.
+     * @param seam The seam to remove.
+     * @return The removed seam. This is just the parameter, and is unedited.
+     */
+    public Seam removeSeam(Seam seam) {
+        if (seam.isHorizontal()) {
+            removeRows(seam.getColumns());
+        } else {
+            removeColumns(seam.getColumns());
+        }
+        return seam;
+    }
 
-            // If they exist, set the left/right neighbor's pointers to not point to this pixel
-            if (currentPixel.leftNeighbor != null) {
-                currentPixel.leftNeighbor.rightNeighbor = currentPixel.rightNeighbor;
-            }
-            if (currentPixel.rightNeighbor != null) {
-                currentPixel.rightNeighbor.leftNeighbor = currentPixel.leftNeighbor;
-            }
+    /**
+     * Removes the pixel at the given column of each row, shifting the rest of each row over it.
+     * @param columns The column to remove in each row, indexed by row.
+     */
+    private void removeColumns(int[] columns) {
+        for (int row = 0; row < height; row++) {
+            int index = row * stride + columns[row];
 
-            // Updating the parent relationships to remove the seam
-            switch (currentSeam.getRelationship()) {
-                case DIAGONAL_LEFT -> {
-                    // Should only be diagonal if the diagonal exists. No need to check for null.
-                    currentPixel.parent.child = currentPixel.leftNeighbor;
-                    currentPixel.leftNeighbor.parent = currentPixel.parent;
-                }
-                case DIAGONAL_RIGHT -> {
-                    // Should only be diagonal if the diagonal exists. No need to check for null.
-                    currentPixel.parent.child = currentPixel.rightNeighbor;
-                    currentPixel.rightNeighbor.parent = currentPixel.parent;
-                }
-                case STRAIGHT_UP -> {
-                    // Don't need to change parent and child relationship
-                    // amongst nodes that are both being removed.
+            // Shift the pixels to the right of the seam one to the left, covering the seam's pixel
+            System.arraycopy(pixels, index + 1, pixels, index, width - columns[row] - 1);
+        }
+
+        width--;
+
+        for (EnergyMap energyMap : energyMaps.values()) {
+            energyMap.removeSeam(columns, Direction.VERTICAL);
+        }
+    }
+
+    /**
+     * Removes the pixel at the given row of each column, shifting the rest of each column up over it.
+     * The rows are walked in order rather than the columns, so the pixels are read the way they are stored.
+     * @param rows The row to remove in each column, indexed by column.
+     */
+    private void removeRows(int[] rows) {
+        int firstRow = minimum(rows, width);
+        for (int row = firstRow; row < height - 1; row++) {
+            int rowStart = row * stride;
+            for (int col = 0; col < width; col++) {
+                if (row >= rows[col]) {
+                    pixels[rowStart + col] = pixels[rowStart + stride + col];
                 }
             }
-            currentSeam = currentSeam.getPreviousNode();
         }
 
-        width--;
-        return seam;
+        height--;
 
+        for (EnergyMap energyMap : energyMaps.values()) {
+            energyMap.removeSeam(rows, Direction.HORIZONTAL);
+        }
+    }
+
+    /**
+     * Returns the smallest of the first entries of an array.
+     * @param values The array.
+     * @param length The number of entries to look at.
+     * @return The smallest of them.
+     */
+    static int minimum(int[] values, int length) {
+        int minimum = Integer.MAX_VALUE;
+        for (int i = 0; i < length; i++) {
+            minimum = Math.min(minimum, values[i]);
+        }
+        return minimum;
+    }
+
+    /**
+     * Removes the given number of lowest energy seams from the image, one after another, as a single batch.
+     * The seam costs are kept between seams and only the ones each removal changed are found again,
+     * as with setIncrementalSearch, and no seam is built as a chain of nodes.
+     * If the graph isn't searching incrementally, the kept costs are let go once the batch is done.
+     * @param count The number of seams to remove. At least one column must be left.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @return The removed seams, which can be put back with insertSeams.
+     */
+    public SeamBatch removeSeams(int count, EnergyFormula energyFormula) {
+        if (count < 0 || count >= width) {
+            throw new IllegalArgumentException(
+                    "Cannot remove " + count + " seams from an image " + width + " pixels wide");
+        }
+
+        SeamBatch batch = new SeamBatch(count, height);
+        EnergyMap energyMap = getEnergyMap(energyFormula);
+        for (int seam = 0; seam < count; seam++) {
+            int bottomColumn = energyMap.updateSeamCosts();
+            int[] columns = traceSeam(bottomColumn, energyMap.getRelationships(), Direction.VERTICAL);
+            batch.add(columns, pixels, stride, energyMap.getSeamCosts()[(height - 1) * stride + bottomColumn]);
+            removeColumns(columns);
+        }
+
+        if (!incrementalSearch) {
+            energyMap.releaseSeamCosts();
+        }
+        return batch;
+    }
+
+    /**
+     * Removes lowest energy seams from the image until it is the given width, as a single batch.
+     * @param targetWidth The width to carve the image down to, from 1 to the current width.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @return The removed seams, which can be put back with insertSeams.
+     */
+    public SeamBatch carveToWidth(int targetWidth, EnergyFormula energyFormula) {
+        if (targetWidth < 1 || targetWidth > width) {
+            throw new IllegalArgumentException(
+                    "Cannot carve an image " + width + " pixels wide to " + targetWidth + " pixels");
+        }
+        return removeSeams(width - targetWidth, energyFormula);
+    }
+
+    /**
+     * Enlarges the image by duplicating the given number of lowest energy seams, as a single batch.
+     * The seams are found together, by removing them from a copy, so each one is a different seam of the image
+     * instead of the same cheapest seam again and again. Every pixel of a seam gets a new pixel to its right,
+     * colored as the average of it and its right neighbor. All the seams are inserted in one pass over the
+     * pixels, and the storage grows at most once, to the final width.
+     * @param count The number of seams to insert. At most one less than the width.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @return The inserted seams, which can be removed again with removeSeams. Their costs are those of the
+     *         seams that were duplicated, in the order they were found.
+     */
+    public SeamBatch enlarge(int count, EnergyFormula energyFormula) {
+        if (count < 0 || count >= width) {
+            throw new IllegalArgumentException(
+                    "Cannot insert " + count + " seams into an image " + width + " pixels wide");
+        }
+
+        SeamBatch found = copy(null).removeSeams(count, energyFormula);
+        int newWidth = width + count;
+        int newStride = Math.max(stride, newWidth);
+        int[] newPixels = newStride == stride ? pixels : new int[newStride * rowCapacity()];
+        SeamBatch inserted = SeamEnlarger.widenRows(pixels, stride, width, height, found, newPixels, newStride);
+
+        if (newPixels != pixels) {
+            pixels = newPixels;
+            stride = newStride;
+            // The search buffers were sized for the old stride
+            previousSeamCosts = null;
+            currentSeamCosts = null;
+            seamRelationships = null;
+            seamColumns = null;
+            seamColors = null;
+        }
+        width = newWidth;
+        // Every row changed, so the energies are found again when they are next needed
+        energyMaps.clear();
+        return inserted;
+    }
+
+    /**
+     * Enlarges the image by duplicating lowest energy seams until it is the given width, as a single batch.
+     * @param targetWidth The width to enlarge the image to, from the current width to one less than twice it.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @return The inserted seams, which can be removed again with removeSeams.
+     */
+    public SeamBatch enlargeToWidth(int targetWidth, EnergyFormula energyFormula) {
+        if (targetWidth < width || targetWidth >= 2 * width) {
+            throw new IllegalArgumentException(
+                    "Cannot enlarge an image " + width + " pixels wide to " + targetWidth + " pixels");
+        }
+        return enlarge(targetWidth - width, energyFormula);
+    }
+
+    /**
+     * Removes a batch of seams again after it was put back with insertSeams, redoing the whole batch.
+     * The seams are removed at the columns they were recorded at, in the order they were first removed in,
+     * so no seam has to be found again.
+     * Also removes the seams inserted by enlarge, undoing the enlargement.
+     * @param batch The batch to remove. It must be the last batch that was put back or inserted, with no edits since.
+     */
+    public void removeSeams(SeamBatch batch) {
+        if (batch.getHeight() != height || batch.size() >= width) {
+            throw new IllegalStateException("Cannot remove seams that don't fit the image!!!");
+        }
+
+        int[] columns = getSeamColumnsBuffer();
+        for (int seam = 0; seam < batch.size(); seam++) {
+            batch.getColumns(seam, columns);
+            removeColumns(columns);
+        }
+    }
+
+    /**
+     * Puts back a batch of seams removed by removeSeams or carveToWidth, undoing the whole batch.
+     * The seams are inserted in the opposite order they were removed in.
+     * @param batch The batch to put back. It must be the last edit that changed the size of the image.
+     */
+    public void insertSeams(SeamBatch batch) {
+        if (batch.getHeight() != height || width + batch.size() > stride) {
+            throw new IllegalStateException("Cannot insert seams that were never removed!!!");
+        }
+
+        int[] columns = getSeamColumnsBuffer();
+        for (int seam = batch.size() - 1; seam >= 0; seam--) {
+            batch.getColumns(seam, columns);
+            for (int row = 0; row < height; row++) {
+                int index = row * stride + columns[row];
+
+                // Make room for the seam's pixel by shifting the rest of the row one to the right
+                System.arraycopy(pixels, index, pixels, index + 1, width - columns[row]);
+                pixels[index] = batch.getRGB(seam, row);
+            }
+
+            width++;
+            for (EnergyMap energyMap : energyMaps.values()) {
+                energyMap.insertSeam(columns, Direction.VERTICAL);
+            }
+        }
     }
 
     /**
      * Inserts a given seam into the image.
-     * May replace nodes that replaced the original seam, or may insert the seam where it was cut out.
+     * May replace pixels that replaced the original seam, or may insert the seam where it was cut out.
      * Intended for use with the undo functionality.
      * @param seam The seam to insert into the image.
      * @param affectedWidth Whether the insertion affected the width of the image.
      * @return The seam that was inserted. Should be the same as the parameter, and be unedited.
      */
     public SeamNode insertSeam(SeamNode seam, boolean affectedWidth) {
+        return insertSeam(seam, affectedWidth, Direction.VERTICAL);
+    }
+
+    /**
+     * Inserts a given horizontal seam into the image.
+     * May replace pixels that replaced the original seam, or may insert the seam where it was cut out.
+     * Intended for use with the undo functionality.
+     * @param seam The horizontal seam to insert into the image.
+     * @param affectedHeight Whether the insertion affected the height of the image.
+     * @return The seam that was inserted. Should be the same as the parameter, and be unedited.
+     */
+    public SeamNode insertHorizontalSeam(SeamNode seam, boolean affectedHeight) {
+        return insertSeam(seam, affectedHeight, Direction.HORIZONTAL);
+    }
+
+    /**
+     * Inserts a given compact seam into the image, in whichever direction it runs, with the colors it holds.
+     * May replace pixels that replaced the original seam, or may insert the seam where it was cut out.
+     * Intended for use with the undo functionality.
+     * @param seam The seam to insert into the image.
+     * @param affectedSize Whether the insertion affected the width (or height, for a horizontal seam) of the image.
+     * @return The seam that was inserted. This is just the parameter, and is unedited.
+     */
+    public Seam insertSeam(Seam seam, boolean affectedSize) {
+        insertSeam(seam.getColumns(), seam.getColors(), affectedSize, seam.getDirection());
+        return seam;
+    }
+
+    /**
+     * Inserts a given seam into the image.
+     * @param seam The seam to insert into the image.
+     * @param affectedSize Whether the insertion affected the width (or height, for a horizontal seam) of the image.
+     * @param direction The direction the seam runs in.
+     * @return The seam that was inserted. Should be the same as the parameter, and be unedited.
+     */
+    private SeamNode insertSeam(SeamNode seam, boolean affectedSize, Direction direction) {
+        int[] columns = getSeamColumns(seam, direction);
+
+        int[] colors = getSeamColorsBuffer();
         SeamNode currentSeam = seam;
+        for (int line = lineCount(direction) - 1; currentSeam != null; line--) {
+            colors[line] = currentSeam.getRGB();
+            currentSeam = currentSeam.getPreviousNode();
+        }
 
-        while (currentSeam != null) {
-            Pixel currentPixel = currentSeam.getPixel();
+        insertSeam(columns, colors, affectedSize, direction);
+        return seam;
+    }
 
-            // If they exist, set the left/right neighbors' pointers back to the currentPixel.
-            if (currentPixel.leftNeighbor != null) {
-                currentPixel.leftNeighbor.rightNeighbor = currentPixel;
-            }
-            if (currentPixel.rightNeighbor != null) {
-                currentPixel.rightNeighbor.leftNeighbor = currentPixel;
-            }
+    /**
+     * Inserts a seam into the image.
+     * @param columns The position of the seam in each line.
+     * @param colors The color of the seam's pixel in each line.
+     * @param affectedSize Whether the insertion affected the width (or height, for a horizontal seam) of the image.
+     * @param direction The direction the seam runs in.
+     */
+    private void insertSeam(int[] columns, int[] colors, boolean affectedSize, Direction direction) {
+        boolean vertical = direction == Direction.VERTICAL;
+        if (affectedSize && (vertical ? width == stride : height == rowCapacity())) {
+            throw new IllegalStateException("Cannot insert a seam that was never removed!!!");
+        }
 
-            // Handling parent/child relationships
-            switch (currentSeam.getRelationship()) {
-                case DIAGONAL_LEFT -> {
-                    // Should only be diagonal if the diagonal exists. No need to check for null.
-                    currentPixel.parent.child = currentPixel;
-                    currentPixel.leftNeighbor.parent = currentSeam.previousNode.getPixel();
-                }
-                case DIAGONAL_RIGHT -> {
-                    // Should only be diagonal if the diagonal exists. No need to check for null.
-                    currentPixel.parent.child = currentPixel;
-                    currentPixel.rightNeighbor.parent = currentSeam.previousNode.getPixel();
+        if (affectedSize) {
+            // Make room for the seam's pixels by shifting the rest of each row right, or each column down
+            if (vertical) {
+                for (int row = 0; row < height; row++) {
+                    int index = row * stride + columns[row];
+                    System.arraycopy(pixels, index, pixels, index + 1, width - columns[row]);
                 }
-                case STRAIGHT_UP -> {
-                    // The only case in which the parent might be null
-                    // (the first row is always a STRAIGHT_UP relationship)
-                    if (currentPixel.parent != null) {
-                        currentPixel.parent.child = currentPixel;
-                    } else {
-                        if (currentPixel.leftNeighbor == null) {
-                            // If we reinsert at the head (which is the only node with a STRAIGHT_UP relationship,
-                            // a null parent, and a null left neighbor), we set the head accordingly.
-                            head = currentPixel;
+                width++;
+            } else {
+                int firstRow = minimum(columns, width);
+                for (int row = height; row > firstRow; row--) {
+                    int rowStart = row * stride;
+                    for (int col = 0; col < width; col++) {
+                        if (row > columns[col]) {
+                            pixels[rowStart + col] = pixels[rowStart - stride + col];
                         }
                     }
                 }
+                height++;
             }
-            currentSeam = currentSeam.getPreviousNode();
         }
 
-        if (affectedWidth) {
-            width++;
+        for (int line = 0; line < lineCount(direction); line++) {
+            pixels[indexOf(line, columns[line], direction)] = colors[line];
+        }
+
+        if (affectedSize) {
+            for (EnergyMap energyMap : energyMaps.values()) {
+                energyMap.insertSeam(columns, direction);
+            }
+        } else {
+            refreshEnergyMaps(columns, direction);
         }
-        return seam;
     }
 }
@@ -3,9 +3,11 @@ package uk.ac.nulondon;
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
-import java.util.Stack;
+import java.util.List;
 
 /**
  * Handles an instance of ImageGraph, which stores an image.
@@ -16,14 +18,17 @@ public class ImageHandler {
     /**
      * A class to represent a single edit applied to imageGraph.
      * It contains all necessary information to undo itself.
+     * Older commands may have their seam spilled to the disk by the command history,
+     * which reads it back before undoing.
      */
-    private abstract class Command {
+    private abstract class Command implements CommandHistory.Entry {
 
-        // The seam which used to be in the graph
-        protected ImageGraph.SeamNode editedSeam;
+        // The seam which used to be in the graph, with the colors it had.
+        // It is a compact seam, so hundreds of edits in the history take little memory.
+        protected Seam editedSeam;
 
-        // Variable that keeps track of whether the width of the image is changed as a result
-        // of a deletion or an undo of a deletion
+        // Variable that keeps track of whether the width of the image (or its height, for a horizontal seam)
+        // is changed as a result of a deletion or an undo of a deletion
         boolean affectedWidth;
 
         public Command() {
@@ -36,18 +41,44 @@ public class ImageHandler {
             imageGraph.insertSeam(editedSeam, affectedWidth);
         }
 
-        public ImageGraph.SeamNode getEditedSeam() {
+        /**
+         * Enacts the edit again after it was undone, at the seam it recorded, so no seam is searched for.
+         * Highlights are never redone, since undoing one only cancels it.
+         */
+        public void redo() {
+            imageGraph.removeSeam(editedSeam);
+        }
+
+        public Seam getEditedSeam() {
             return editedSeam;
         }
+
+        @Override
+        public long memoryBytes() {
+            return editedSeam.sizeInBytes();
+        }
+
+        @Override
+        public void writeTo(DataOutput out) throws IOException {
+            editedSeam.writeTo(out);
+        }
+
+        @Override
+        public void release() {
+            editedSeam = null;
+        }
+
+        @Override
+        public void readFrom(DataInput in) throws IOException {
+            editedSeam = Seam.readFrom(in);
+        }
     }
 
     /**
      * A specific type of command that highlights a seam.
+     * The edited seam keeps the colors the highlight covers, so undoing the command removes the highlight.
      */
     private abstract class HighlightCommand extends Command {
-        // The seam that contains all the new, highlighted pixels
-        // This is stored so that it can be easily removed later.
-        ImageGraph.SeamNode highlightedSeam;
 
         /**
          * Highlights a seam and sets the affected width to false because
@@ -68,8 +99,8 @@ public class ImageHandler {
          */
         public HighlightBluestSeam() {
             super();
-            editedSeam = imageGraph.findSeam(new ImageGraph.BlueEnergy());
-            highlightedSeam = imageGraph.highlightSeam(editedSeam, Color.BLUE);
+            editedSeam = findCompactSeam(new ImageGraph.BlueEnergy());
+            imageGraph.highlightSeam(editedSeam, Color.BLUE);
         }
     }
 
@@ -82,8 +113,22 @@ public class ImageHandler {
          */
         public HighlightLowestEnergySeam() {
             super();
-            editedSeam = imageGraph.findSeam(new ImageGraph.BrightnessEnergy());
-            highlightedSeam = imageGraph.highlightSeam(editedSeam, Color.RED);
+            editedSeam = findCompactSeam(new ImageGraph.BrightnessEnergy());
+            imageGraph.highlightSeam(editedSeam, Color.RED);
+        }
+    }
+
+    /**
+     * A command to find the lowest energy horizontal seam in the image and highlight it red.
+     */
+    private class HighlightLowestEnergyHorizontalSeam extends HighlightCommand {
+        /**
+         * Finds the lowest energy horizontal seam in the image and highlights it red.
+         */
+        public HighlightLowestEnergyHorizontalSeam() {
+            super();
+            editedSeam = imageGraph.findCompactHorizontalSeam(new ImageGraph.BrightnessEnergy());
+            imageGraph.highlightSeam(editedSeam, Color.RED);
         }
     }
 
@@ -92,35 +137,93 @@ public class ImageHandler {
      */
     private class DeleteSeam extends Command {
         /**
-         * Removes the given seam from the image.
+         * Removes the given seam from the image, whatever pixels are at its position now,
+         * such as its highlight. The seam's own colors are put back when the command is undone.
          * @param seam The seam to remove.
          */
-        public DeleteSeam(ImageGraph.SeamNode seam) {
+        public DeleteSeam(Seam seam) {
             affectedWidth = true;
             editedSeam = imageGraph.removeSeam(seam);
         }
+    }
+
+    /**
+     * A command to carve the image down to a width, removing many lowest energy seams as a single edit.
+     */
+    private class CarveToWidth extends Command {
+
+        // The seams that were removed
+        private SeamBatch removedSeams;
 
         /**
-         * For use with highlight deletion. Removes the given seam from the image.
-         * Stores the original seam that the highlight replaced.
-         * @param seam The seam to remove. Most likely a highlighted seam.
-         * @param originalSeam The seam that was originally replaced, likely by a highlight command.
+         * Removes lowest energy seams from the image until it is the given width.
+         * @param targetWidth The width to carve the image down to.
          */
-        public DeleteSeam(ImageGraph.SeamNode seam, ImageGraph.SeamNode originalSeam) {
+        public CarveToWidth(int targetWidth) {
             affectedWidth = true;
-            editedSeam = originalSeam;
-            imageGraph.removeSeam(seam);
+            removedSeams = imageGraph.carveToWidth(targetWidth, new ImageGraph.BrightnessEnergy());
+        }
+
+        /**
+         * Puts every removed seam back into the image at once.
+         */
+        @Override
+        public void undo() {
+            imageGraph.insertSeams(removedSeams);
+        }
+
+        /**
+         * Removes every seam again, at the columns they were removed at before.
+         */
+        @Override
+        public void redo() {
+            imageGraph.removeSeams(removedSeams);
+        }
+
+        @Override
+        public long memoryBytes() {
+            return removedSeams.sizeInBytes();
+        }
+
+        @Override
+        public void writeTo(DataOutput out) throws IOException {
+            removedSeams.writeTo(out);
+        }
+
+        @Override
+        public void release() {
+            removedSeams = null;
+        }
+
+        @Override
+        public void readFrom(DataInput in) throws IOException {
+            removedSeams = SeamBatch.readFrom(in);
         }
     }
 
     // The image representation
     private final ImageGraph imageGraph;
 
+    // What the original file's header said about the image
+    private final ImageProbe imageProbe;
+
+    // Writes the saved images in the background
+    private final ImageExporter imageExporter;
+
     // Tracks the number of images created for file naming purposes
     private int tempImageCounter;
 
+    // The memory the edit history may take before older edits are spilled to the disk, by default
+    public static final long DEFAULT_HISTORY_MEMORY_BUDGET = 64 * Storage.BYTES_PER_MEGABYTE;
+
     // The edit history
-    private Stack<Command> commandHistory;
+    private final CommandHistory<Command> commandHistory;
+
+    // The edits that were undone, newest undo on top, until a new edit is made
+    private final CommandHistory<Command> redoHistory;
+
+    // Finds the next seams in the background while a highlighted seam waits to be deleted
+    private final SeamSpeculator seamSpeculator;
 
     // Whether the image is currently highlighted
     private boolean isHighlighted;
@@ -131,14 +234,42 @@ public class ImageHandler {
      * @throws IOException If the original image cannot be read.
      */
     public ImageHandler(String filePath) throws IOException {
+        this(filePath, DEFAULT_HISTORY_MEMORY_BUDGET);
+    }
+
+    /**
+     * Creates a new instance of ImageHandler, to handle the ImageGraph created from the given file.
+     * The file's header is checked before the image is decoded, so a file that isn't an image,
+     * or an image too large to carve in the heap, is turned away straight away.
+     * @param filePath The path to the file, such as 'src/main/resources/beach.png'
+     * @param historyMemoryBudget The memory, in bytes, the edit history may take before older edits are
+     *                            spilled to the disk.
+     * @throws IOException If the original image cannot be read, or is too large to carve.
+     */
+    public ImageHandler(String filePath, long historyMemoryBudget) throws IOException {
 
         File originalFile = new File(filePath);
+        imageProbe = ImageProbe.probe(originalFile);
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        if (imageProbe.estimateCarvingBytes() > maxMemory) {
+            throw new IOException("The image is %dx%d and needs about %d MB to carve, but there are only %d MB"
+                    .formatted(imageProbe.width(), imageProbe.height(),
+                            imageProbe.estimateCarvingBytes() / Storage.BYTES_PER_MEGABYTE,
+                            maxMemory / Storage.BYTES_PER_MEGABYTE));
+        }
+
         BufferedImage oldImg = ImageIO.read(originalFile);
+        if (oldImg == null) {
+            throw new IOException("Can't decode " + filePath);
+        }
         imageGraph = new ImageGraph(oldImg);
+        imageExporter = new ImageExporter(new File("src/main"));
 
         tempImageCounter = 1;
 
-        commandHistory = new Stack<>();
+        commandHistory = new CommandHistory<>(historyMemoryBudget);
+        redoHistory = new CommandHistory<>(historyMemoryBudget);
+        seamSpeculator = new SeamSpeculator(List.of(new ImageGraph.BrightnessEnergy(), new ImageGraph.BlueEnergy()));
         isHighlighted = false;
     }
 
@@ -150,6 +281,22 @@ public class ImageHandler {
         return commandHistory.size();
     }
 
+    /**
+     * Returns the number of undone edits that can be redone.
+     * @return The number of undone edits that can be redone.
+     */
+    public int getRedoHistorySize() {
+        return redoHistory.size();
+    }
+
+    /**
+     * Returns what the original file's header said about the image, such as its format and original size.
+     * @return The probe of the original file.
+     */
+    public ImageProbe getImageProbe() {
+        return imageProbe;
+    }
+
     /**
      * Returns the image representation.
      * @return The image representation.
@@ -166,12 +313,26 @@ public class ImageHandler {
         return isHighlighted;
     }
 
+    /**
+     * Returns whether the highlighted seam can be deleted: there is one, and it isn't the last column
+     * (or the last row, for a horizontal seam) of the image.
+     * @return Whether the highlighted seam can be deleted.
+     */
+    public boolean canDeleteHighlightedSeam() {
+        if (!isHighlighted) {
+            return false;
+        }
+        boolean horizontal = commandHistory.peek().getEditedSeam().isHorizontal();
+        return (horizontal ? imageGraph.getHeight() : imageGraph.getWidth()) > 1;
+    }
+
     /**
      * Highlights the bluest seam in the image and adds the edit to the command history.
      */
     public void highlightBluestSeam() {
-        commandHistory.add(new HighlightBluestSeam());
+        commandHistory.push(new HighlightBluestSeam());
         isHighlighted = true;
+        speculateNextSeams();
         saveImage();
     }
 
@@ -179,8 +340,19 @@ public class ImageHandler {
      * Highlights the lowest energy seam in the image and adds the edit to the command history.
      */
     public void highlightLowestEnergySeam() {
-        commandHistory.add(new HighlightLowestEnergySeam());
+        commandHistory.push(new HighlightLowestEnergySeam());
         isHighlighted = true;
+        speculateNextSeams();
+        saveImage();
+    }
+
+    /**
+     * Highlights the lowest energy horizontal seam in the image and adds the edit to the command history.
+     */
+    public void highlightLowestEnergyHorizontalSeam() {
+        commandHistory.push(new HighlightLowestEnergyHorizontalSeam());
+        isHighlighted = true;
+        speculateNextSeams();
         saveImage();
     }
 
@@ -194,7 +366,9 @@ public class ImageHandler {
             // When the highlighted portion is deleted, the highlighting command in the command history is destroyed.
             // So, when undoing, the image will be reset back to before the highlight.
             HighlightCommand prevHighlight = (HighlightCommand) commandHistory.pop();
-            commandHistory.add(new DeleteSeam(prevHighlight.highlightedSeam, prevHighlight.getEditedSeam()));
+            commandHistory.push(new DeleteSeam(prevHighlight.getEditedSeam()));
+            seamSpeculator.confirm(prevHighlight.getEditedSeam());
+            redoHistory.clear();
             isHighlighted = false;
             saveImage();
         } else {
@@ -203,32 +377,112 @@ public class ImageHandler {
     }
 
     /**
-     * Undoes the previous edit.
+     * Removes lowest energy seams until the image is the given width, and adds that as one edit
+     * to the command history. Only the final image is saved.
+     * Carving to the current width is not an edit, so nothing is added to the history and redos are kept.
+     * @param targetWidth The width to carve the image down to, from 1 to the current width.
+     * @return Whether any seams were removed.
+     * @throws IllegalStateException When the image is highlighted. Its state is not altered in that case.
+     * @throws IllegalArgumentException When the width is out of range. Its state is not altered in that case.
+     */
+    public boolean carveToWidth(int targetWidth) {
+        if (isHighlighted) {
+            throw new IllegalStateException("The highlight must be removed or deleted before carving.");
+        }
+        if (targetWidth == imageGraph.getWidth()) {
+            return false;
+        }
+        seamSpeculator.cancel();
+        commandHistory.push(new CarveToWidth(targetWidth));
+        redoHistory.clear();
+        saveImage();
+        return true;
+    }
+
+    /**
+     * Undoes the previous edit, so that it can be redone.
      * For the purpose of undoing, highlighting a seam and then deleting it are
      * counted as one edit, and are both undone together.
+     * Undoing a highlight only cancels it: it can't be redone, and the edits that can be redone are kept.
      */
     public void undo() {
         if (commandHistory.isEmpty()) {
             throw new IllegalStateException("There are no edits to undo!!!");
         }
+        seamSpeculator.cancel();
         Command undoingCommand = commandHistory.pop();
         undoingCommand.undo();
+        if (!isHighlighted) {
+            redoHistory.push(undoingCommand);
+        }
         isHighlighted = false;
         saveImage();
     }
 
     /**
-     * Saves the image stored in imageGraph
+     * Redoes the last undone edit, removing the seams it recorded again without searching for them.
+     * Making any edit other than a highlight clears the edits that can be redone.
+     * @throws IllegalStateException When there is no edit to redo, or the image is highlighted.
+     *      In this case, the state of the program is not altered in any way.
+     */
+    public void redo() {
+        if (isHighlighted) {
+            throw new IllegalStateException("The highlight must be removed or deleted before redoing.");
+        }
+        if (redoHistory.isEmpty()) {
+            throw new IllegalStateException("There are no edits to redo!!!");
+        }
+        seamSpeculator.cancel();
+        Command redoingCommand = redoHistory.pop();
+        redoingCommand.redo();
+        commandHistory.push(redoingCommand);
+        saveImage();
+    }
+
+    /**
+     * Finds the lowest cost vertical seam in the image, using the one found in the background
+     * if it was found for the image as it is now.
+     * @param energyFormula The formula to determine the cost of a seam.
+     * @return The seam.
+     */
+    private Seam findCompactSeam(ImageGraph.EnergyFormula energyFormula) {
+        Seam speculatedSeam = seamSpeculator.take(energyFormula);
+        return speculatedSeam != null ? speculatedSeam : imageGraph.findCompactSeam(energyFormula);
+    }
+
+    /**
+     * Starts finding the next seams in the background, for the image as it will be if the highlighted seam
+     * is deleted. They are thrown away by any other edit.
+     */
+    private void speculateNextSeams() {
+        if (canDeleteHighlightedSeam()) {
+            seamSpeculator.speculate(imageGraph, commandHistory.peek().getEditedSeam());
+        }
+    }
+
+    /**
+     * Saves the image stored in imageGraph.
+     * Only a copy of the image is taken here, into the storage of an image that was already written,
+     * and it is written to a file in the background.
+     * If edits come in faster than the images can be written, the older unwritten ones are skipped.
      */
     public void saveImage() {
-        imageGraph.exportImage("tempIMG_%d.png".formatted(tempImageCounter));
+        BufferedImage snapshot = imageGraph.toBufferedImage(imageExporter.takeFinishedImage());
+        imageExporter.export(snapshot, "tempIMG_%d.png".formatted(tempImageCounter));
         tempImageCounter++;
     }
 
     /**
-     * Saves the final image of the program
+     * Saves the final image of the program, and waits until it is written to the disk.
      */
     public void finalOutput() {
-        imageGraph.exportImage("newImg.png");
+        try {
+            // Nothing edits the image while waiting, so it doesn't need to be copied
+            imageExporter.exportAndWait(imageGraph.asBufferedImage(), "newImg.png");
+            System.out.println("newImg.png saved successfully");
+        } catch (IOException e) {
+            System.out.println("Failed to export image");
+            System.exit(0);
+        }
     }
 }
@@ -0,0 +1,99 @@
+package uk.ac.nulondon;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * What an image file's header says about it, read without decoding any of its pixels.
+ * Probing takes about as long as opening the file, however large the image is,
+ * so images can be checked or scheduled before deciding to decode them.
+ * @param formatName The name of the image's format, such as png.
+ * @param width The width of the image, in pixels.
+ * @param height The height of the image, in pixels.
+ * @param imageType The BufferedImage type the image decodes to, such as BufferedImage.TYPE_4BYTE_ABGR,
+ *                  or BufferedImage.TYPE_CUSTOM if it has none or the reader can't tell.
+ * @param bitsPerPixel The bits each decoded pixel takes.
+ */
+public record ImageProbe(String formatName, int width, int height, int imageType, int bitsPerPixel) {
+
+    // The bits per pixel assumed when the reader can't tell what the image decodes to
+    private static final int DEFAULT_BITS_PER_PIXEL = 32;
+
+    /**
+     * Probes an image file.
+     * @param file The image file.
+     * @return What the file's header says about the image.
+     * @throws IOException If the file couldn't be read, or isn't an image in a known format.
+     */
+    public static ImageProbe probe(File file) throws IOException {
+        if (!file.canRead()) {
+            throw new IOException("Can't read " + file);
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            return probe(input);
+        }
+    }
+
+    /**
+     * Probes an encoded image.
+     * @param encodedImage The encoded image.
+     * @return What the image's header says about it.
+     * @throws IOException If the bytes aren't an image in a known format.
+     */
+    public static ImageProbe probe(byte[] encodedImage) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(encodedImage))) {
+            return probe(input);
+        }
+    }
+
+    /**
+     * Probes the first image of a stream, with the first reader that knows its format.
+     * @param input The stream, or null if ImageIO couldn't open one.
+     * @return What the image's header says about it.
+     * @throws IOException If the stream isn't an image in a known format.
+     */
+    private static ImageProbe probe(ImageInputStream input) throws IOException {
+        Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+        if (readers == null || !readers.hasNext()) {
+            throw new IOException("Not an image in a known format");
+        }
+
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            // ImageIO.read decodes into the first of the image's types
+            Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+            ImageTypeSpecifier type = types.hasNext() ? types.next() : null;
+            int imageType = type == null ? BufferedImage.TYPE_CUSTOM : type.getBufferedImageType();
+            int bitsPerPixel = type == null ? DEFAULT_BITS_PER_PIXEL : type.getColorModel().getPixelSize();
+            return new ImageProbe(reader.getFormatName(), reader.getWidth(0), reader.getHeight(0),
+                    imageType, bitsPerPixel);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Returns roughly how many bytes the decoded image takes.
+     * @return The size of the decoded image, in bytes.
+     */
+    public long estimateDecodedBytes() {
+        return ((long) width * height * bitsPerPixel + Byte.SIZE - 1) / Byte.SIZE;
+    }
+
+    /**
+     * Returns roughly how many bytes carving the image takes at its peak, when both the decoded image
+     * and the ImageGraph built from it are on the heap.
+     * @return The size, in bytes.
+     */
+    public long estimateCarvingBytes() {
+        return estimateDecodedBytes() + ImageGraph.estimateCarvingBytes(width, height);
+    }
+}
@@ -0,0 +1,142 @@
+package uk.ac.nulondon;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A compact seam: the column it crosses each row at, the color of the pixel it covered in each row,
+ * and its cost. A horizontal seam stores the row it crosses each column at instead.
+ * It takes 8 bytes per row, where a chain of SeamNodes takes several objects.
+ * The colors are the ones the seam covered when it was found, so inserting the seam puts them back
+ * even after it was highlighted.
+ */
+public final class Seam {
+
+    // The column of the seam in each row from the top, or the row in each column from the left
+    private final int[] columns;
+
+    // The color of the pixel the seam covered in each row, or each column
+    private final int[] colors;
+
+    // The cost of the seam, as determined by an EnergyFormula
+    private final double cost;
+
+    // The direction the seam runs in
+    private final ImageGraph.Direction direction;
+
+    /**
+     * Creates a new Seam.
+     * @param columns The position of the seam in each line.
+     * @param colors The color of the pixel the seam covered in each line.
+     * @param cost The cost of the seam.
+     * @param direction The direction the seam runs in.
+     */
+    Seam(int[] columns, int[] colors, double cost, ImageGraph.Direction direction) {
+        this.columns = columns;
+        this.colors = colors;
+        this.cost = cost;
+        this.direction = direction;
+    }
+
+    /**
+     * Returns the number of rows the seam crosses, or columns for a horizontal seam.
+     * @return The length of the seam.
+     */
+    public int length() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the column the seam crosses a row at, or the row it crosses a column at for a horizontal seam.
+     * @param line The row, or the column for a horizontal seam.
+     * @return The column, or the row.
+     */
+    public int getColumn(int line) {
+        return columns[line];
+    }
+
+    /**
+     * Returns the color of the pixel the seam covered in a row, or a column for a horizontal seam.
+     * @param line The row, or the column for a horizontal seam.
+     * @return The integer representation of the pixel's color.
+     */
+    public int getRGB(int line) {
+        return colors[line];
+    }
+
+    /**
+     * Returns the position of the seam in every line.
+     * @return The seam's own array, which must not be changed.
+     */
+    int[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the color of the pixel the seam covered in every line.
+     * @return The seam's own array, which must not be changed.
+     */
+    int[] getColors() {
+        return colors;
+    }
+
+    /**
+     * Returns the direction the seam runs in.
+     * @return The direction of the seam.
+     */
+    ImageGraph.Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * Returns the cost of the seam.
+     * @return The cost of the seam.
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * Returns whether the seam is a horizontal seam.
+     * @return Whether the seam runs from the left edge to the right instead of from the top to the bottom.
+     */
+    public boolean isHorizontal() {
+        return direction == ImageGraph.Direction.HORIZONTAL;
+    }
+
+    /**
+     * Returns roughly how many bytes the seam takes on the heap.
+     * @return The size of the seam, in bytes.
+     */
+    long sizeInBytes() {
+        return Storage.OBJECT_OVERHEAD + 2 * (Storage.OBJECT_OVERHEAD + (long) Integer.BYTES * columns.length);
+    }
+
+    /**
+     * Writes the seam in a compact binary form that readFrom reads back.
+     * @param out Where to write the seam.
+     * @throws IOException If the seam couldn't be written.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeBoolean(isHorizontal());
+        out.writeDouble(cost);
+        Storage.writeInts(out, columns, columns.length);
+        Storage.writeInts(out, colors, colors.length);
+    }
+
+    /**
+     * Reads a seam written by writeTo.
+     * @param in Where to read the seam from.
+     * @return The seam.
+     * @throws IOException If the seam couldn't be read.
+     */
+    static Seam readFrom(DataInput in) throws IOException {
+        ImageGraph.Direction direction = in.readBoolean() ? ImageGraph.Direction.HORIZONTAL
+                : ImageGraph.Direction.VERTICAL;
+        double cost = in.readDouble();
+        int[] columns = Storage.readInts(in);
+        int[] colors = Storage.readInts(in);
+        return new Seam(columns, colors, cost, direction);
+    }
+}
@@ -0,0 +1,186 @@
+package uk.ac.nulondon;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A batch of seams removed from an image together, such as by carveToWidth, in the order they were removed,
+ * or inserted together by enlarge.
+ * Only the column and color of each seam in each row are stored, so the batch can be undone in one step
+ * with insertSeams without keeping a chain of nodes for every seam.
+ */
+public final class SeamBatch {
+
+    // The number of rows of each seam
+    private final int height;
+
+    // The column of each seam in each row, one seam after another. Each column is where the seam was
+    // in the image at the time it was removed, after the seams before it were already gone.
+    private final int[] columns;
+
+    // The color of each removed pixel, laid out like the columns
+    private final int[] colors;
+
+    // The cost of each seam
+    private final double[] costs;
+
+    // The number of seams in the batch
+    private int size;
+
+    /**
+     * Creates a new, empty SeamBatch.
+     * @param capacity The number of seams the batch will hold.
+     * @param height The number of rows of each seam.
+     */
+    SeamBatch(int capacity, int height) {
+        this.height = height;
+        this.columns = new int[capacity * height];
+        this.colors = new int[capacity * height];
+        this.costs = new double[capacity];
+    }
+
+    /**
+     * Sets the column and color of a seam in a row, for a batch filled in some other order than by add.
+     * @param seam The index of the seam.
+     * @param row The row.
+     * @param column The column of the seam in that row.
+     * @param rgb The color of its pixel there.
+     */
+    void set(int seam, int row, int column, int rgb) {
+        columns[seam * height + row] = column;
+        colors[seam * height + row] = rgb;
+    }
+
+    /**
+     * Sets the cost of a seam, for a batch filled by set.
+     * @param seam The index of the seam.
+     * @param cost The cost of the seam.
+     */
+    void setCost(int seam, double cost) {
+        costs[seam] = cost;
+    }
+
+    /**
+     * Sets the number of seams in a batch filled by set.
+     * @param size The number of seams, at most the capacity of the batch.
+     */
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Adds a seam to the batch, before it is removed from the image.
+     * @param seamColumns The column of the seam in each row.
+     * @param pixels The packed pixels of the image.
+     * @param stride The distance between the starts of two rows of pixels.
+     * @param cost The cost of the seam.
+     */
+    void add(int[] seamColumns, int[] pixels, int stride, double cost) {
+        int start = size * height;
+        for (int row = 0; row < height; row++) {
+            columns[start + row] = seamColumns[row];
+            colors[start + row] = pixels[row * stride + seamColumns[row]];
+        }
+        costs[size] = cost;
+        size++;
+    }
+
+    /**
+     * Returns the number of seams in the batch.
+     * @return The number of seams in the batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of rows of each seam.
+     * @return The number of rows of each seam.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the column of a seam in a row, in the image as it was when the seam was removed.
+     * @param seam The index of the seam, in the order the seams were removed.
+     * @param row The row.
+     * @return The column of the seam in that row.
+     */
+    public int getColumn(int seam, int row) {
+        return columns[Objects.checkIndex(seam, size) * height + Objects.checkIndex(row, height)];
+    }
+
+    /**
+     * Copies the column of a seam in every row.
+     * @param seam The index of the seam, in the order the seams were removed.
+     * @param seamColumns Where to store the column of the seam in each row.
+     */
+    void getColumns(int seam, int[] seamColumns) {
+        System.arraycopy(columns, Objects.checkIndex(seam, size) * height, seamColumns, 0, height);
+    }
+
+    /**
+     * Returns the color of the pixel a seam removed from a row.
+     * @param seam The index of the seam, in the order the seams were removed.
+     * @param row The row.
+     * @return The color of that pixel.
+     */
+    public int getRGB(int seam, int row) {
+        return colors[Objects.checkIndex(seam, size) * height + Objects.checkIndex(row, height)];
+    }
+
+    /**
+     * Returns the cost of a seam, as defined by the formula it was found with.
+     * @param seam The index of the seam, in the order the seams were removed.
+     * @return The cost of the seam.
+     */
+    public double getCost(int seam) {
+        return costs[Objects.checkIndex(seam, size)];
+    }
+
+    /**
+     * Returns roughly how many bytes the batch takes on the heap.
+     * @return The size of the batch, in bytes.
+     */
+    long sizeInBytes() {
+        return 4 * Storage.OBJECT_OVERHEAD + 2L * Integer.BYTES * columns.length
+                + (long) Double.BYTES * costs.length;
+    }
+
+    /**
+     * Writes the batch in a compact binary form that readFrom reads back.
+     * @param out Where to write the batch.
+     * @throws IOException If the batch couldn't be written.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(height);
+        out.writeInt(size);
+        Storage.writeInts(out, columns, size * height);
+        Storage.writeInts(out, colors, size * height);
+        for (int seam = 0; seam < size; seam++) {
+            out.writeDouble(costs[seam]);
+        }
+    }
+
+    /**
+     * Reads a batch written by writeTo.
+     * @param in Where to read the batch from.
+     * @return The batch.
+     * @throws IOException If the batch couldn't be read.
+     */
+    static SeamBatch readFrom(DataInput in) throws IOException {
+        int height = in.readInt();
+        int size = in.readInt();
+        SeamBatch batch = new SeamBatch(size, height);
+        System.arraycopy(Storage.readInts(in), 0, batch.columns, 0, size * height);
+        System.arraycopy(Storage.readInts(in), 0, batch.colors, 0, size * height);
+        for (int seam = 0; seam < size; seam++) {
+            batch.costs[seam] = in.readDouble();
+        }
+        batch.size = size;
+        return batch;
+    }
+}
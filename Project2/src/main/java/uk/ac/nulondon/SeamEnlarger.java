@@ -0,0 +1,93 @@
+package uk.ac.nulondon;
+
+import java.util.Arrays;
+
+/**
+ * Widens the rows of an image to make room for a batch of seams, duplicating every pixel of each seam.
+ * The seams are found by removing them from a copy of the image, and all of them are inserted in one pass
+ * over the pixels. Used by ImageGraph.enlarge.
+ */
+final class SeamEnlarger {
+
+    // The bits of each channel of a packed color except its lowest one, so halving them keeps the channels apart
+    private static final int HALVABLE_CHANNEL_BITS = 0xFEFEFEFE;
+
+    /**
+     * SeamEnlarger only has static methods.
+     */
+    private SeamEnlarger() {
+    }
+
+    /**
+     * Copies the rows of an image into wider rows, giving every pixel of each seam a new pixel to its right,
+     * colored as the average of it and its right neighbor.
+     * @param pixels The packed rows of the image.
+     * @param stride The distance between the starts of two rows of the image.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param found The seams to duplicate, in the order they were removed from a copy of the image.
+     * @param newPixels Where to store the wider rows. This may be pixels itself if newStride is stride.
+     * @param newStride The distance between the starts of two wider rows.
+     * @return The inserted seams, numbered from left to right, which can be removed again with removeSeams.
+     *         Their costs are those of the seams that were duplicated, in the order they were found.
+     */
+    static SeamBatch widenRows(int[] pixels, int stride, int width, int height,
+                                          SeamBatch found, int[] newPixels, int newStride) {
+        int count = found.size();
+        int newWidth = width + count;
+        SeamBatch inserted = new SeamBatch(count, height);
+        for (int seam = 0; seam < count; seam++) {
+            inserted.setCost(seam, found.getCost(seam));
+        }
+
+        // The column of each pixel left in a row of the copy, shifted along as the seams were removed,
+        // and whether each column of the row is duplicated
+        int[] originalColumns = new int[width];
+        boolean[] duplicated = new boolean[width];
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                originalColumns[column] = column;
+            }
+            Arrays.fill(duplicated, false);
+            int rowWidth = width;
+            for (int seam = 0; seam < count; seam++) {
+                int column = found.getColumn(seam, row);
+                duplicated[originalColumns[column]] = true;
+                System.arraycopy(originalColumns, column + 1, originalColumns, column, rowWidth - column - 1);
+                rowWidth--;
+            }
+
+            // Widen the row from its end, so no pixel is overwritten before it is moved when the storage is reused
+            int from = row * stride + width - 1;
+            int to = row * newStride + newWidth - 1;
+            int seam = count;
+            int right = pixels[from];
+            for (int column = width - 1; column >= 0; column--, from--) {
+                int color = pixels[from];
+                if (duplicated[column]) {
+                    // The inserted seams are numbered from left to right, and each is removed at the column
+                    // it would have once the seams to its left are gone
+                    seam--;
+                    int average = averageColor(color, right);
+                    newPixels[to] = average;
+                    inserted.set(seam, row, to - row * newStride - seam, average);
+                    to--;
+                }
+                newPixels[to--] = color;
+                right = color;
+            }
+        }
+        inserted.setSize(count);
+        return inserted;
+    }
+
+    /**
+     * Returns the average of two colors, channel by channel, rounded down.
+     * @param first The first color.
+     * @param second The second color.
+     * @return The average color.
+     */
+    private static int averageColor(int first, int second) {
+        return (((first ^ second) & HALVABLE_CHANNEL_BITS) >>> 1) + (first & second);
+    }
+}
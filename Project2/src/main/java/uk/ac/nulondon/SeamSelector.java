@@ -0,0 +1,130 @@
+package uk.ac.nulondon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Picks the cheapest seams out of a single seam search, each ending at a different column of the last row.
+ * The columns are taken from a heap of the costs of the last row, so only as many of them are ordered
+ * as it takes to find the seams. Used by ImageGraph.findSeams.
+ */
+final class SeamSelector {
+
+    /**
+     * SeamSelector only has static methods.
+     */
+    private SeamSelector() {
+    }
+
+    /**
+     * Follows the cheapest seams back up from the cheapest ends of the last row, cheapest first.
+     * Equal costs are taken from left to right, as the search picks its cheapest seam.
+     * <p>
+     * If the seams must not share any pixel, a seam that runs into one picked before it is skipped.
+     * Seams found by one search never cross without sharing a pixel: a pixel only steps to a neighbor above
+     * that is strictly cheaper than the pixel its own neighbor would step to. So the seams keep the order of
+     * their ends in every row, and a seam can only run into the nearest picked seam on either side of its end.
+     * @param image The image the seams were searched in.
+     * @param costs The cheapest cost of a seam ending at each pixel of the last row, from costOffset on.
+     * @param costOffset Where the cost of the seam ending in column 0 is in costs.
+     * @param relationships The relationship of every pixel with the best pixel above it, stored by ordinal
+     *                      and laid out like the pixels of the image.
+     * @param stride The distance between the starts of two rows of the image.
+     * @param count The most seams to pick.
+     * @param disjoint Whether no two seams may share a pixel.
+     * @return The column of each seam in every row, cheapest first. Every array is a new one.
+     */
+    static List<int[]> selectSeams(ImageGraph image, float[] costs, int costOffset, byte[] relationships,
+                                   int stride, int count, boolean disjoint) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        // A heap of the end columns, cheapest on top
+        int[] heap = new int[width];
+        for (int col = 0; col < width; col++) {
+            heap[col] = col;
+        }
+        for (int i = width / 2 - 1; i >= 0; i--) {
+            siftDown(heap, i, width, costs, costOffset);
+        }
+
+        List<int[]> seams = new ArrayList<>(Math.min(count, width));
+        // The seams picked so far by the column they end at, if the seams must be disjoint
+        TreeMap<Integer, int[]> picked = disjoint ? new TreeMap<>() : null;
+        for (int size = width; size > 0 && seams.size() < count; size--) {
+            int endColumn = heap[0];
+            heap[0] = heap[size - 1];
+            siftDown(heap, 0, size - 1, costs, costOffset);
+
+            int[] left = null;
+            int[] right = null;
+            if (disjoint) {
+                Map.Entry<Integer, int[]> leftEntry = picked.lowerEntry(endColumn);
+                Map.Entry<Integer, int[]> rightEntry = picked.higherEntry(endColumn);
+                left = leftEntry == null ? null : leftEntry.getValue();
+                right = rightEntry == null ? null : rightEntry.getValue();
+            }
+
+            // Follow the seam up from its end, giving up as soon as it runs into a seam picked before
+            int[] columns = new int[height];
+            columns[height - 1] = endColumn;
+            boolean overlaps = false;
+            for (int row = height - 1; row > 0 && !overlaps; row--) {
+                int col = columns[row];
+                int step = ImageGraph.columnOffset(ImageGraph.RELATIONSHIPS[relationships[row * stride + col]]);
+                columns[row - 1] = col + step;
+                overlaps = left != null && left[row - 1] == columns[row - 1]
+                        || right != null && right[row - 1] == columns[row - 1];
+            }
+            if (overlaps) {
+                continue;
+            }
+            if (disjoint) {
+                picked.put(endColumn, columns);
+            }
+            seams.add(columns);
+        }
+        return seams;
+    }
+
+    /**
+     * Moves an entry of a heap of columns down until neither entry below it is cheaper.
+     * @param heap The columns, with the cheapest on top.
+     * @param index The position of the entry to move.
+     * @param size The number of entries in the heap.
+     * @param costs The costs of the columns.
+     * @param costOffset Where the cost of column 0 is in costs.
+     */
+    private static void siftDown(int[] heap, int index, int size, float[] costs, int costOffset) {
+        int column = heap[index];
+        int position = index;
+        while (2 * position + 1 < size) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && cheaper(heap[child + 1], heap[child], costs, costOffset)) {
+                child++;
+            }
+            if (!cheaper(heap[child], column, costs, costOffset)) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = column;
+    }
+
+    /**
+     * Returns whether a column comes before another: it is cheaper, or it costs the same and is further left.
+     * @param column The column.
+     * @param other The other column.
+     * @param costs The costs of the columns.
+     * @param costOffset Where the cost of column 0 is in costs.
+     * @return Whether the column comes first.
+     */
+    private static boolean cheaper(int column, int other, float[] costs, int costOffset) {
+        float cost = costs[costOffset + column];
+        float otherCost = costs[costOffset + other];
+        return cost < otherCost || cost == otherCost && column < other;
+    }
+}
@@ -0,0 +1,135 @@
+package uk.ac.nulondon;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Finds the next seams on a background thread while the user decides whether to delete a highlighted seam.
+ * The seams are found on a copy of the image with the highlighted seam already removed,
+ * so if the user does delete it, the next highlight can use them without searching.
+ * Every other edit makes them wrong, and they are thrown away.
+ */
+class SeamSpeculator {
+
+    // The single thread that finds the seams
+    private final ExecutorService searcher;
+
+    // The formulas to find the next seams with
+    private final List<ImageGraph.EnergyFormula> energyFormulas;
+
+    // The seam the current speculation assumes is deleted, or null if there is no speculation
+    private Seam pendingSeam;
+
+    // Whether the pending seam was deleted, so the speculated seams match the image
+    private boolean confirmed;
+
+    // The speculated seam for each class of energy formula
+    private final Map<Class<?>, CompletableFuture<Seam>> speculatedSeams = new HashMap<>();
+
+    // The copy the seams were last found on, and the task that searches it
+    private ImageGraph copy;
+    private CompletableFuture<Void> lastTask = CompletableFuture.completedFuture(null);
+
+    /**
+     * Creates a new SeamSpeculator.
+     * @param energyFormulas The formulas to find the next seams with, in the order they are found.
+     */
+    SeamSpeculator(List<ImageGraph.EnergyFormula> energyFormulas) {
+        this.energyFormulas = List.copyOf(energyFormulas);
+        this.searcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "seam-speculator");
+            // Speculated seams are never needed, so they shouldn't keep the program running
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts finding the next seams of the image as it will be once the given seam is deleted,
+     * throwing away any older speculation. The image is copied before this returns,
+     * so it can be edited straight away.
+     * @param imageGraph The image, with the seam still in it.
+     * @param seam The seam that may be deleted next.
+     */
+    void speculate(ImageGraph imageGraph, Seam seam) {
+        cancel();
+
+        // The copy can only be reused once the searches on it are done
+        ImageGraph speculativeGraph = imageGraph.copy(lastTask.isDone() ? copy : null);
+        speculativeGraph.removeSeam(seam);
+        copy = speculativeGraph;
+        pendingSeam = seam;
+
+        Map<ImageGraph.EnergyFormula, CompletableFuture<Seam>> seams = new LinkedHashMap<>();
+        for (ImageGraph.EnergyFormula energyFormula : energyFormulas) {
+            CompletableFuture<Seam> speculatedSeam = new CompletableFuture<>();
+            speculatedSeams.put(energyFormula.getClass(), speculatedSeam);
+            seams.put(energyFormula, speculatedSeam);
+        }
+
+        lastTask = CompletableFuture.runAsync(() -> {
+            for (Map.Entry<ImageGraph.EnergyFormula, CompletableFuture<Seam>> entry : seams.entrySet()) {
+                // A cancelled seam isn't needed, so it isn't searched for
+                if (!entry.getValue().isDone()) {
+                    try {
+                        entry.getValue().complete(speculativeGraph.findCompactSeam(entry.getKey()));
+                    } catch (RuntimeException e) {
+                        entry.getValue().completeExceptionally(e);
+                    }
+                }
+            }
+        }, searcher);
+    }
+
+    /**
+     * Tells the speculator that a seam was deleted.
+     * The speculated seams are kept if it is the seam they assumed was deleted, and thrown away otherwise.
+     * @param seam The deleted seam, as it was highlighted.
+     */
+    void confirm(Seam seam) {
+        if (seam == pendingSeam && pendingSeam != null) {
+            confirmed = true;
+        } else {
+            cancel();
+        }
+    }
+
+    /**
+     * Takes the speculated seam for the given formula, waiting for it if it is still being found.
+     * The other speculated seams are thrown away, since taking one is followed by an edit.
+     * @param energyFormula The formula the seam should be found with.
+     * @return The seam, or null if there is none that matches the image.
+     */
+    Seam take(ImageGraph.EnergyFormula energyFormula) {
+        CompletableFuture<Seam> speculatedSeam =
+                confirmed ? speculatedSeams.get(energyFormula.getClass()) : null;
+        speculatedSeams.remove(energyFormula.getClass());
+        cancel();
+        if (speculatedSeam == null) {
+            return null;
+        }
+        try {
+            return speculatedSeam.join();
+        } catch (RuntimeException e) {
+            // Searching on the image itself will run into the same problem and report it
+            return null;
+        }
+    }
+
+    /**
+     * Throws away the speculated seams. Seams that haven't started being found are skipped.
+     */
+    void cancel() {
+        for (CompletableFuture<Seam> speculatedSeam : speculatedSeams.values()) {
+            speculatedSeam.cancel(false);
+        }
+        speculatedSeams.clear();
+        pendingSeam = null;
+        confirmed = false;
+    }
+}
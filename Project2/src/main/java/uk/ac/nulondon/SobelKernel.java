@@ -0,0 +1,90 @@
+package uk.ac.nulondon;
+
+/**
+ * Finds the brightness energy of a whole row of pixels at a time, from the brightness of that row
+ * and the rows above and below it. See ImageGraph.BrightnessEnergy for the formula.
+ */
+interface SobelKernel {
+
+    /**
+     * Finds the energy of every pixel in a row.
+     * A neighbor outside the image counts as having the same brightness as the pixel itself.
+     * @param above The brightness of the row above, or null if the row is the first row.
+     * @param row The brightness of the row.
+     * @param below The brightness of the row below, or null if the row is the last row.
+     * @param width The number of pixels in the row.
+     * @param energies Where to store the energies, rounded to floats.
+     * @param offset The index in energies to store the energy of the first pixel at.
+     */
+    void energyRow(double[] above, double[] row, double[] below, int width, float[] energies, int offset);
+
+    /**
+     * Creates the fastest kernel available. This is the vector kernel when it was built (with the vector profile)
+     * and the jdk.incubator.vector module was added to the JVM (with --add-modules jdk.incubator.vector),
+     * and the scalar kernel otherwise.
+     * @return The kernel.
+     */
+    static SobelKernel create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // Loaded by name, so the rest of the code builds without the incubating module
+                return (SobelKernel) Class.forName("uk.ac.nulondon.VectorSobelKernel")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // The kernel wasn't built, or the module can't be used, so fall back to the scalar kernel
+            }
+        }
+        return new Scalar();
+    }
+
+    /**
+     * A kernel that finds the energy of one pixel at a time.
+     */
+    final class Scalar implements SobelKernel {
+
+        @Override
+        public void energyRow(double[] above, double[] row, double[] below, int width,
+                              float[] energies, int offset) {
+            for (int x = 0; x < width; x++) {
+                energies[offset + x] = (float) energy(above, row, below, width, x);
+            }
+        }
+
+        /**
+         * Finds the energy of a single pixel in a row.
+         * @param above The brightness of the row above, or null if the row is the first row.
+         * @param row The brightness of the row.
+         * @param below The brightness of the row below, or null if the row is the last row.
+         * @param width The number of pixels in the row.
+         * @param x The column of the pixel.
+         * @return The energy of the pixel.
+         */
+        static double energy(double[] above, double[] row, double[] below, int width, int x) {
+            double current = row[x];
+            boolean hasLeft = x > 0;
+            boolean hasRight = x < width - 1;
+
+            /*
+            Doubles a-i represent the brightness of each pixel, where e is the current pixel:
+
+            a | b | c
+            d | e | f
+            g | h | i
+            */
+            double a = above != null && hasLeft ? above[x - 1] : current;
+            double b = above != null ? above[x] : current;
+            double c = above != null && hasRight ? above[x + 1] : current;
+            double d = hasLeft ? row[x - 1] : current;
+            double f = hasRight ? row[x + 1] : current;
+            double g = below != null && hasLeft ? below[x - 1] : current;
+            double h = below != null ? below[x] : current;
+            double i = below != null && hasRight ? below[x + 1] : current;
+
+            // The same operations in the same order as BrightnessEnergy, so the energies are exactly the same
+            double horizontalEnergy = a + 2 * d + g - (c + 2 * f + i);
+            double verticalEnergy = a + 2 * b + c - (g + 2 * h + i);
+
+            return Math.sqrt(horizontalEnergy * horizontalEnergy + verticalEnergy * verticalEnergy);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package uk.ac.nulondon;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Helpers for measuring and storing data: roughly how much of the heap the classes that keep removed seams take,
+ * such as Seam and SeamBatch, how their arrays are written to a stream and read back,
+ * and the size of a megabyte that memory sizes are reported in.
+ */
+final class Storage {
+
+    // Roughly how many bytes the header of an object or array takes on the heap
+    static final int OBJECT_OVERHEAD = 16;
+
+    // The bytes in a megabyte, for reporting memory sizes
+    static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    /**
+     * Storage only has static methods.
+     */
+    private Storage() {
+    }
+
+    /**
+     * Writes the first entries of an array of ints, after their count.
+     * @param out Where to write them.
+     * @param values The array.
+     * @param length The number of entries to write.
+     * @throws IOException If they couldn't be written.
+     */
+    static void writeInts(DataOutput out, int[] values, int length) throws IOException {
+        out.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    /**
+     * Reads an array of ints written by writeInts.
+     * @param in Where to read them from.
+     * @return The array.
+     * @throws IOException If they couldn't be read.
+     */
+    static int[] readInts(DataInput in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
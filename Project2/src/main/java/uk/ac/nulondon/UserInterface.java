@@ -1,5 +1,6 @@
 package uk.ac.nulondon;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.InputMismatchException;
 import java.util.Scanner;
@@ -45,8 +46,13 @@ public class UserInterface {
                 imageHandler = new ImageHandler(filePath);
                 gettingFilePath = false;
             } catch (IOException e) {
-                System.out.println("Invalid path. Please enter the exact path to the file.");
-                System.out.println("For example, to use beach.png, enter src/main/resources/beach.png");
+                if (new File(filePath).isFile()) {
+                    // The file is there, but it isn't an image that can be carved
+                    System.out.println(e.getMessage() + ". Please enter the path to a different image.");
+                } else {
+                    System.out.println("Invalid path. Please enter the exact path to the file.");
+                    System.out.println("For example, to use beach.png, enter src/main/resources/beach.png");
+                }
             }
         }
 
@@ -77,15 +83,23 @@ public class UserInterface {
         System.out.println("Please choose an option");
         System.out.println("b - Highlight the bluest seam");
         System.out.println("e - Highlight the lowest energy seam");
-        // As long as the width of the image is greater than 1 and the image is currently highlighted,
+        System.out.println("h - Highlight the lowest energy horizontal seam");
+        // As long as the image is currently highlighted and the seam isn't its last column (or row),
         // it is a valid option to delete a seam from the image
-        if (imageHandler.getImageGraph().getWidth() > 1 && imageHandler.isHighlighted()) {
+        if (imageHandler.canDeleteHighlightedSeam()) {
             System.out.println("d - Remove the seam from the image");
         }
+        if (imageHandler.getImageGraph().getWidth() > 1) {
+            System.out.println("c - Carve the image down to a width");
+        }
         // Only displays the undo option if it is currently a valid choice (if there are edits to undo).
         if (imageHandler.getEditHistorySize() > 0) {
             System.out.println("u - Undo previous edit");
         }
+        // Only displays the redo option if there are undone edits that haven't been replaced by a new edit
+        if (imageHandler.getRedoHistorySize() > 0) {
+            System.out.println("r - Redo the last undone edit");
+        }
         System.out.println("q - Quit");
     }
 
@@ -126,17 +140,25 @@ public class UserInterface {
         switch (selection) {
             case "b" -> {
                 imageHandler.highlightBluestSeam();
-                System.out.println("Ready to remove the bluest seam, as highlighted. Type 'd' to confirm, any other letter to cancel.");
+                System.out.println("Ready to remove the bluest seam, as highlighted."
+                        + " Type 'd' to confirm, any other letter to cancel.");
                 System.out.println();
             }
             case "e" -> {
                 imageHandler.highlightLowestEnergySeam();
-                System.out.println("Ready to remove the lowest energy seam, as highlighted. Type 'd' to confirm, any other letter to cancel.");
+                System.out.println("Ready to remove the lowest energy seam, as highlighted."
+                        + " Type 'd' to confirm, any other letter to cancel.");
+                System.out.println();
+            }
+            case "h" -> {
+                imageHandler.highlightLowestEnergyHorizontalSeam();
+                System.out.println("Ready to remove the lowest energy horizontal seam, as highlighted."
+                        + " Type 'd' to confirm, any other letter to cancel.");
                 System.out.println();
             }
             case "d" -> {
                 // if there is only one seam left in the image, cannot delete it
-                if (imageHandler.getImageGraph().getWidth() <= 1) {
+                if (imageHandler.isHighlighted() && !imageHandler.canDeleteHighlightedSeam()) {
                     System.out.println("We cannot remove the last seam in the image. Please either undo or quit.");
                     System.out.println();
                 }
@@ -150,6 +172,27 @@ public class UserInterface {
                     System.out.println();
                 }
             }
+            case "c" -> {
+                int width = imageHandler.getImageGraph().getWidth();
+                if (width <= 1) {
+                    System.out.println("We cannot remove the last seam in the image. Please either undo or quit.");
+                    System.out.println();
+                } else {
+                    System.out.println("Enter the width to carve the image to, from 1 to " + width + ".");
+                    try {
+                        if (imageHandler.carveToWidth(Integer.parseInt(getUserInput().trim()))) {
+                            System.out.println("Image carved to a width of "
+                                    + imageHandler.getImageGraph().getWidth() + ".");
+                        } else {
+                            System.out.println("The image is already " + width + " pixels wide, so nothing changed.");
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // NumberFormatException is an IllegalArgumentException too
+                        System.out.println("That is not a width between 1 and " + width + ".");
+                    }
+                    System.out.println();
+                }
+            }
             case "u" -> {
                 // If there are no edits left
                 if (imageHandler.getEditHistorySize() <= 0) {
@@ -161,6 +204,17 @@ public class UserInterface {
                     System.out.println();
                 }
             }
+            case "r" -> {
+                // If nothing was undone since the last edit
+                if (imageHandler.getRedoHistorySize() <= 0) {
+                    System.out.println("There are no edits to redo! Please try a different command.");
+                    System.out.println();
+                } else {
+                    imageHandler.redo();
+                    System.out.println("Last undone edit redone");
+                    System.out.println();
+                }
+            }
             // if the user wants to quit
             case "q" -> {
                 System.out.println("Quitting...");
@@ -0,0 +1,86 @@
+package uk.ac.nulondon;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestAdmissionController {
+
+    @Test
+    void testAdmission() {
+        // The jobs handed to the executor are run by the test, one at a time
+        List<Runnable> handedOver = new ArrayList<>();
+        List<String> ran = new ArrayList<>();
+        AdmissionController controller = new AdmissionController(handedOver::add, 100, 2);
+
+        Assertions.assertThat(controller.submit(60, () -> ran.add("a"))).isEqualTo(AdmissionController.Decision.ADMITTED);
+        Assertions.assertThat(controller.submit(50, () -> ran.add("b"))).isEqualTo(AdmissionController.Decision.QUEUED);
+        // This one would fit, but it doesn't pass the job waiting before it
+        Assertions.assertThat(controller.submit(30, () -> ran.add("c"))).isEqualTo(AdmissionController.Decision.QUEUED);
+        Assertions.assertThat(controller.submit(10, () -> ran.add("d"))).isEqualTo(AdmissionController.Decision.QUEUE_FULL);
+        Assertions.assertThat(controller.submit(101, () -> ran.add("e"))).isEqualTo(AdmissionController.Decision.TOO_LARGE);
+        Assertions.assertThat(controller.getQueuedCount()).isEqualTo(2);
+        Assertions.assertThat(controller.getReservedBytes()).isEqualTo(60);
+
+        // Once the first job is done, both waiting jobs fit
+        handedOver.remove(0).run();
+        Assertions.assertThat(controller.getQueuedCount()).isZero();
+        Assertions.assertThat(controller.getReservedBytes()).isEqualTo(80);
+        while (!handedOver.isEmpty()) {
+            handedOver.remove(0).run();
+        }
+
+        Assertions.assertThat(ran).containsExactly("a", "b", "c");
+        Assertions.assertThat(controller.getReservedBytes()).isZero();
+        Assertions.assertThat(controller.getAdmittedCount()).isEqualTo(3);
+        Assertions.assertThat(controller.getRejectedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testInlineExecutor() {
+        // An executor that runs every job straight away, so admitting a job finishes it before returning
+        List<String> ran = new ArrayList<>();
+        AdmissionController controller = new AdmissionController(Runnable::run, 100, 4);
+        Assertions.assertThat(controller.submit(60, () -> {
+            ran.add("a");
+            // These wait until a is done, then each one lets in the next as it finishes
+            controller.submit(60, () -> ran.add("b"));
+            controller.submit(60, () -> ran.add("c"));
+            controller.submit(60, () -> ran.add("d"));
+        })).isEqualTo(AdmissionController.Decision.ADMITTED);
+
+        Assertions.assertThat(ran).containsExactly("a", "b", "c", "d");
+        Assertions.assertThat(controller.getQueuedCount()).isZero();
+        Assertions.assertThat(controller.getReservedBytes()).isZero();
+    }
+
+    @Test
+    void testHeldBytesAndShutdown() {
+        List<Runnable> handedOver = new ArrayList<>();
+        AdmissionController controller = new AdmissionController(handedOver::add, 100, 4);
+        Assertions.assertThat(controller.submit(60, 10, () -> { })).isEqualTo(AdmissionController.Decision.ADMITTED);
+        Assertions.assertThat(controller.submit(50, 30, () -> { })).isEqualTo(AdmissionController.Decision.QUEUED);
+        Assertions.assertThat(controller.getQueuedBytes()).isEqualTo(30);
+        // The bytes held by the running job and the waiting one leave no room for another body this large
+        Assertions.assertThat(controller.submit(50, 20, () -> { }))
+                .isEqualTo(AdmissionController.Decision.QUEUE_FULL);
+
+        Assertions.assertThat(controller.shutdown()).isEqualTo(1);
+        Assertions.assertThat(controller.getQueuedCount()).isZero();
+        Assertions.assertThat(controller.getQueuedBytes()).isZero();
+        Assertions.assertThat(controller.submit(10, () -> { })).isEqualTo(AdmissionController.Decision.SHUT_DOWN);
+    }
+
+    @Test
+    void testEstimateFootprint() throws IOException {
+        byte[] home = Files.readAllBytes(new File("src/main/resources/home.png").toPath());
+        Assertions.assertThat(AdmissionController.estimateFootprint(home))
+                .isEqualTo(home.length + 16 * 16 * 4 + ImageGraph.estimateCarvingBytes(16, 16));
+        Assertions.assertThatThrownBy(() -> AdmissionController.estimateFootprint(new byte[]{1, 2, 3}))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,75 @@
+package uk.ac.nulondon;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public class TestBatchCarver {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testCarveAll() throws IOException {
+        List<File> inputs = BatchCarver.collectInputs(List.of("src/main/resources"));
+        Assertions.assertThat(inputs).extracting(File::getName)
+                .containsExactly("beach.png", "duck.png", "home.png", "snowman.png");
+
+        File output = new File(directory, "carved");
+        BatchCarver carver = new BatchCarver(output, 6, 0, new ImageGraph.BrightnessEnergy(), 2);
+        List<BatchCarver.Result> results = carver.carveAll(inputs);
+
+        // Every image is carved like a single ImageGraph would carve it
+        for (BatchCarver.Result result : results) {
+            Assertions.assertThat(result.succeeded()).isTrue();
+            ImageGraph expected = new ImageGraph(ImageIO.read(result.input()));
+            expected.carveToWidth(6, new ImageGraph.BrightnessEnergy());
+            BufferedImage written = ImageIO.read(result.output());
+            Assertions.assertThat(written.getWidth()).isEqualTo(6);
+            for (int y = 0; y < expected.getHeight(); y++) {
+                for (int x = 0; x < expected.getWidth(); x++) {
+                    Assertions.assertThat(written.getRGB(x, y)).isEqualTo(expected.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testFailuresDontStopTheBatch() throws IOException {
+        // beach.png is only 8 pixels wide, so 10 seams can't be removed from it
+        List<File> inputs = List.of(new File("src/main/resources/beach.png"), new File("src/main/resources/home.png"),
+                new File("missing.png"));
+        BatchCarver carver = new BatchCarver(directory, 0, 10, new ImageGraph.BlueEnergy(), 3);
+        List<BatchCarver.Result> results = carver.carveAll(inputs);
+
+        Assertions.assertThat(results).extracting(BatchCarver.Result::succeeded).containsExactly(false, true, false);
+        Assertions.assertThat(results.get(1).width()).isEqualTo(6);
+        Assertions.assertThat(new File(directory, "home.png")).exists();
+        Assertions.assertThat(new File(directory, "beach.png")).doesNotExist();
+    }
+
+    @Test
+    void testOutputNamesMustNotCollide() throws IOException {
+        // a.jpg and a.png would both be written to a.png
+        File inputDirectory = new File(directory, "inputs");
+        Assertions.assertThat(inputDirectory.mkdir()).isTrue();
+        Assertions.assertThat(new File(inputDirectory, "a.jpg").createNewFile()).isTrue();
+        Assertions.assertThat(new File(inputDirectory, "a.png").createNewFile()).isTrue();
+        Assertions.assertThatThrownBy(() -> BatchCarver.collectInputs(List.of(inputDirectory.getPath())))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("a.png");
+
+        // So would two files with the same name in different directories, and nothing is carved
+        File output = new File(directory, "carved");
+        BatchCarver carver = new BatchCarver(output, 6, 0, new ImageGraph.BrightnessEnergy(), 2);
+        Assertions.assertThatThrownBy(() -> carver.carveAll(
+                        List.of(new File("src/main/resources/home.png"), new File("src/test/resources/home.png"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThat(output).doesNotExist();
+    }
+}
@@ -0,0 +1,56 @@
+package uk.ac.nulondon;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+public class TestCarveIndex {
+
+    private static void assertCarvedLikeGraph(CarveIndex carveIndex, BufferedImage original,
+                                              ImageGraph.EnergyFormula energyFormula) {
+        BufferedImage reused = null;
+        for (int width = carveIndex.getOriginalWidth(); width >= carveIndex.getMinimumWidth(); width--) {
+            ImageGraph graph = new ImageGraph(original);
+            graph.carveToWidth(width, energyFormula);
+            BufferedImage expected = graph.toBufferedImage();
+
+            // Going narrower reuses the storage of the wider image
+            reused = carveIndex.toBufferedImage(width, reused);
+            Assertions.assertThat(reused.getWidth()).isEqualTo(width);
+            for (int y = 0; y < expected.getHeight(); y++) {
+                for (int x = 0; x < width; x++) {
+                    Assertions.assertThat(reused.getRGB(x, y)).isEqualTo(expected.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testEveryWidthMatchesCarving() throws IOException {
+        BufferedImage home = ImageIO.read(new File("src/main/resources/home.png"));
+        ImageGraph graph = new ImageGraph(home);
+        CarveIndex carveIndex = CarveIndex.build(graph, 1, new ImageGraph.BrightnessEnergy());
+
+        // Building the index doesn't change the graph
+        Assertions.assertThat(graph.getWidth()).isEqualTo(16);
+        Assertions.assertThat(carveIndex.getMinimumWidth()).isEqualTo(1);
+        assertCarvedLikeGraph(carveIndex, home, new ImageGraph.BrightnessEnergy());
+
+        BufferedImage random = new BufferedImage(40, 23, BufferedImage.TYPE_INT_RGB);
+        Random rng = new Random(21);
+        for (int y = 0; y < random.getHeight(); y++) {
+            for (int x = 0; x < random.getWidth(); x++) {
+                random.setRGB(x, y, rng.nextInt());
+            }
+        }
+        CarveIndex randomIndex = CarveIndex.build(new ImageGraph(random), 25, new ImageGraph.BlueEnergy());
+        assertCarvedLikeGraph(randomIndex, random, new ImageGraph.BlueEnergy());
+
+        Assertions.assertThatThrownBy(() -> randomIndex.toBufferedImage(24))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,127 @@
+package uk.ac.nulondon;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+
+public class TestCarvingService {
+
+    private CarvingService service;
+    private HttpClient client;
+
+    @BeforeEach
+    void startService() throws IOException {
+        service = new CarvingService(0, 2, 4);
+        service.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void stopService() {
+        service.stop();
+    }
+
+    private HttpResponse<byte[]> send(String method, String path, byte[] body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + service.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    void testCarve() throws IOException, InterruptedException {
+        byte[] home = Files.readAllBytes(new File("src/main/resources/home.png").toPath());
+        HttpResponse<byte[]> response = send("POST", "/carve?width=6&energy=blue", home);
+        Assertions.assertThat(response.statusCode()).isEqualTo(200);
+
+        ImageGraph expected = new ImageGraph(ImageIO.read(new File("src/main/resources/home.png")));
+        expected.carveToWidth(6, new ImageGraph.BlueEnergy());
+        BufferedImage carved = ImageIO.read(new ByteArrayInputStream(response.body()));
+        Assertions.assertThat(carved.getWidth()).isEqualTo(6);
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                Assertions.assertThat(carved.getRGB(x, y)).isEqualTo(expected.getRGB(x, y));
+            }
+        }
+
+        Assertions.assertThat(send("POST", "/carve?width=6&seams=2", home).statusCode()).isEqualTo(400);
+        Assertions.assertThat(send("POST", "/carve?width=60", home).statusCode()).isEqualTo(400);
+        Assertions.assertThat(send("POST", "/carve?width=6", new byte[]{1, 2, 3}).statusCode()).isEqualTo(400);
+    }
+
+    @Test
+    @Timeout(10)
+    void testPollJob() throws IOException, InterruptedException {
+        byte[] duck = Files.readAllBytes(new File("src/main/resources/duck.png").toPath());
+        HttpResponse<byte[]> accepted = send("POST", "/carve?seams=3&wait=false", duck);
+        Assertions.assertThat(accepted.statusCode()).isEqualTo(202);
+        String location = accepted.headers().firstValue("Location").orElseThrow();
+
+        HttpResponse<byte[]> result = send("GET", location, null);
+        while (result.statusCode() == 202) {
+            Thread.sleep(10);
+            result = send("GET", location, null);
+        }
+        Assertions.assertThat(result.statusCode()).isEqualTo(200);
+        Assertions.assertThat(ImageIO.read(new ByteArrayInputStream(result.body())).getWidth()).isEqualTo(13);
+
+        // The result is only returned once
+        Assertions.assertThat(send("GET", location, null).statusCode()).isEqualTo(404);
+        String stats = new String(send("GET", "/stats", null).body());
+        Assertions.assertThat(stats).contains("\"queued\": 0", "\"admitted\": 1", "\"completed\": 1");
+    }
+
+    @Test
+    void testTooLargeForTheHeapBudget() throws IOException, InterruptedException {
+        service.stop();
+        // home.png is estimated to take several kilobytes
+        service = new CarvingService(0, 2, 4, 1024);
+        service.start();
+
+        byte[] home = Files.readAllBytes(new File("src/main/resources/home.png").toPath());
+        Assertions.assertThat(send("POST", "/carve?width=6", home).statusCode()).isEqualTo(413);
+        Assertions.assertThat(new String(send("GET", "/stats", null).body())).contains("\"rejected\": 1");
+    }
+
+    @Test
+    void testBodyTooLarge() throws IOException, InterruptedException {
+        service.stop();
+        service = new CarvingService(0, 2, 4, Runtime.getRuntime().maxMemory(), 100);
+        service.start();
+
+        byte[] home = Files.readAllBytes(new File("src/main/resources/home.png").toPath());
+        Assertions.assertThat(home.length).isGreaterThan(100);
+        Assertions.assertThat(send("POST", "/carve?width=6", home).statusCode()).isEqualTo(413);
+        Assertions.assertThat(new String(send("GET", "/stats", null).body())).contains("\"admitted\": 0");
+    }
+
+    @Test
+    @Timeout(10)
+    void testUncollectedJobsExpire() throws IOException, InterruptedException {
+        service.setResultTimeToLive(0);
+        byte[] duck = Files.readAllBytes(new File("src/main/resources/duck.png").toPath());
+        String first = send("POST", "/carve?seams=3&wait=false", duck).headers().firstValue("Location").orElseThrow();
+        while (!new String(send("GET", "/stats", null).body()).contains("\"completed\": 1")) {
+            Thread.sleep(10);
+        }
+
+        // Starting another job forgets the finished one nobody collected
+        String second = send("POST", "/carve?seams=3&wait=false", duck).headers().firstValue("Location").orElseThrow();
+        Assertions.assertThat(send("GET", first, null).statusCode()).isEqualTo(404);
+        Assertions.assertThat(second).isNotEqualTo(first);
+    }
+}
@@ -0,0 +1,130 @@
+package uk.ac.nulondon;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class TestCommandHistory {
+
+    private static class Payload implements CommandHistory.Entry {
+        private final int id;
+        private int[] values;
+
+        Payload(int id) {
+            this.id = id;
+            this.values = new int[]{id, id * 2, id * 3};
+        }
+
+        @Override
+        public long memoryBytes() {
+            return 100;
+        }
+
+        @Override
+        public void writeTo(DataOutput out) throws IOException {
+            for (int value : values) {
+                out.writeInt(value);
+            }
+        }
+
+        @Override
+        public void release() {
+            values = null;
+        }
+
+        @Override
+        public void readFrom(DataInput in) throws IOException {
+            values = new int[]{in.readInt(), in.readInt(), in.readInt()};
+        }
+    }
+
+    @Test
+    void testSpillAndLoad() throws IOException {
+        try (CommandHistory<Payload> history = new CommandHistory<>(350)) {
+            for (int i = 0; i < 20; i++) {
+                history.push(new Payload(i));
+                Assertions.assertThat(history.memoryBytes()).isLessThanOrEqualTo(350);
+            }
+            Assertions.assertThat(history.spilledCount()).isEqualTo(17);
+
+            // Pushing after popping reuses the space of the popped payloads in the spill file
+            for (int i = 19; i >= 10; i--) {
+                Assertions.assertThat(history.pop().id).isEqualTo(i);
+            }
+            history.push(new Payload(100));
+            history.push(new Payload(101));
+
+            for (int id : new int[]{101, 100, 9, 8, 7, 6, 5, 4, 3, 2, 1, 0}) {
+                Assertions.assertThat(history.peek().values).containsExactly(id, id * 2, id * 3);
+                Assertions.assertThat(history.pop().id).isEqualTo(id);
+            }
+            Assertions.assertThat(history.isEmpty()).isTrue();
+            Assertions.assertThat(history.spilledCount()).isZero();
+            Assertions.assertThat(history.memoryBytes()).isZero();
+        }
+    }
+
+    @Test
+    void testClearDeletesSpillFile() throws IOException {
+        try (CommandHistory<Payload> history = new CommandHistory<>(150)) {
+            for (int i = 0; i < 5; i++) {
+                history.push(new Payload(i));
+            }
+            Path spillPath = history.spillPath();
+            Assertions.assertThat(spillPath).exists();
+
+            history.clear();
+            Assertions.assertThat(spillPath).doesNotExist();
+            Assertions.assertThat(history.spillPath()).isNull();
+
+            // Spilling again makes a new file
+            for (int i = 0; i < 5; i++) {
+                history.push(new Payload(i));
+            }
+            for (int id = 4; id >= 0; id--) {
+                Assertions.assertThat(history.peek().values).containsExactly(id, id * 2, id * 3);
+                history.pop();
+            }
+        }
+    }
+
+    @Test
+    void testSeamsRoundTrip() throws IOException {
+        ImageGraph graph = new ImageGraph(ImageIO.read(new File("src/main/resources/duck.png")));
+        Seam seam = graph.findCompactHorizontalSeam(new ImageGraph.BrightnessEnergy());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        seam.writeTo(new DataOutputStream(bytes));
+        Seam read = Seam.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        Assertions.assertThat(read.isHorizontal()).isTrue();
+        Assertions.assertThat(read.getCost()).isEqualTo(seam.getCost());
+        for (int line = 0; line < seam.length(); line++) {
+            Assertions.assertThat(read.getColumn(line)).isEqualTo(seam.getColumn(line));
+            Assertions.assertThat(read.getRGB(line)).isEqualTo(seam.getRGB(line));
+        }
+
+        SeamBatch batch = graph.removeSeams(3, new ImageGraph.BrightnessEnergy());
+        bytes.reset();
+        batch.writeTo(new DataOutputStream(bytes));
+        SeamBatch readBatch =
+                SeamBatch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        Assertions.assertThat(readBatch.size()).isEqualTo(3);
+        for (int s = 0; s < 3; s++) {
+            Assertions.assertThat(readBatch.getCost(s)).isEqualTo(batch.getCost(s));
+            for (int row = 0; row < batch.getHeight(); row++) {
+                Assertions.assertThat(readBatch.getColumn(s, row)).isEqualTo(batch.getColumn(s, row));
+                Assertions.assertThat(readBatch.getRGB(s, row)).isEqualTo(batch.getRGB(s, row));
+            }
+        }
+    }
+}
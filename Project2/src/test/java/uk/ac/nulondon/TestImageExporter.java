@@ -0,0 +1,65 @@
+package uk.ac.nulondon;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class TestImageExporter {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testExportAndWait() throws IOException {
+        BufferedImage image = ImageIO.read(new File("src/main/resources/beach.png"));
+        ImageGraph graph = new ImageGraph(image);
+        ImageExporter exporter = new ImageExporter(directory);
+
+        exporter.exportAndWait(graph.toBufferedImage(), "final.png");
+
+        BufferedImage written = ImageIO.read(new File(directory, "final.png"));
+        for (int y = 0; y < graph.getHeight(); y++) {
+            for (int x = 0; x < graph.getWidth(); x++) {
+                Assertions.assertThat(written.getRGB(x, y)).isEqualTo(graph.getRGB(x, y));
+            }
+        }
+        Assertions.assertThat(new File(directory, "final.png.part")).doesNotExist();
+    }
+
+    @Test
+    void testBurstIsCoalesced() throws IOException {
+        ImageExporter exporter = new ImageExporter(directory);
+        List<CompletableFuture<Boolean>> exports = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            exports.add(exporter.export(new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB), i + ".png"));
+        }
+        exporter.exportAndWait(new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB), "final.png");
+
+        // Every image was either written or skipped, and a skipped image never left a file behind
+        for (int i = 0; i < exports.size(); i++) {
+            boolean written = exports.get(i).join();
+            Assertions.assertThat(new File(directory, i + ".png").exists()).isEqualTo(written);
+        }
+        Assertions.assertThat(new File(directory, "final.png")).exists();
+    }
+
+    @Test
+    void testOnlyExportedImagesAreReused() throws IOException {
+        ImageExporter exporter = new ImageExporter(directory);
+        BufferedImage exported = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        exporter.export(exported, "exported.png").join();
+        Assertions.assertThat(exporter.takeFinishedImage()).isSameAs(exported);
+        Assertions.assertThat(exporter.takeFinishedImage()).isNull();
+
+        // An image that was waited on may share storage with something else, so it is never handed back
+        exporter.exportAndWait(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "final.png");
+        Assertions.assertThat(exporter.takeFinishedImage()).isNull();
+    }
+}
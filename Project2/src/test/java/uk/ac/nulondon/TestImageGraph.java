@@ -7,6 +7,13 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 public class TestImageGraph {
 
@@ -45,6 +52,24 @@ public class TestImageGraph {
         return new ImageGraph(bufferedImage);
     }
 
+    /**
+     * Helper function that creates an image of random colors.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param seed The seed of the colors, so every run tests the same pixels.
+     * @return The image.
+     */
+    private BufferedImage randomImage(int width, int height, long seed) {
+        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                bufferedImage.setRGB(x, y, random.nextInt());
+            }
+        }
+        return bufferedImage;
+    }
+
     // -------- Pixel Tests -------- \\
     @Test
     void testGetRGB(){
@@ -93,14 +118,18 @@ public class TestImageGraph {
         ImageGraph.Pixel myPixel2 = new ImageGraph.Pixel(Color.GREEN.getRGB());
         ImageGraph.Pixel myPixel3 = new ImageGraph.Pixel(Color.RED.getRGB());
 
-        ImageGraph.SeamNode seamNode1 = new ImageGraph.SeamNode(myPixel1, new ImageGraph.BlueEnergy());
-        ImageGraph.SeamNode seamNode2 = new ImageGraph.SeamNode(myPixel2, seamNode1, ImageGraph.SeamNode.PreviousSeamRelationship.DIAGONAL_LEFT, 200);
-        ImageGraph.SeamNode seamNode3 = new ImageGraph.SeamNode(myPixel3, seamNode2, ImageGraph.SeamNode.PreviousSeamRelationship.DIAGONAL_RIGHT, new ImageGraph.BlueEnergy());
+        ImageGraph.SeamNode seamNode1 = new ImageGraph.SeamNode(myPixel1, 1, 0);
+        ImageGraph.SeamNode seamNode2 = new ImageGraph.SeamNode(myPixel2, 0, seamNode1, ImageGraph.SeamNode.PreviousSeamRelationship.DIAGONAL_LEFT, 200);
+        ImageGraph.SeamNode seamNode3 = new ImageGraph.SeamNode(myPixel3, 1, seamNode2, ImageGraph.SeamNode.PreviousSeamRelationship.DIAGONAL_RIGHT, 455);
 
         Assertions.assertThat(seamNode1.getPixel()).isEqualTo(myPixel1);
         Assertions.assertThat(seamNode2.getPixel()).isEqualTo(myPixel2);
         Assertions.assertThat(seamNode3.getPixel()).isEqualTo(myPixel3);
 
+        Assertions.assertThat(seamNode1.getColumn()).isEqualTo(1);
+        Assertions.assertThat(seamNode2.getColumn()).isEqualTo(0);
+        Assertions.assertThat(seamNode3.getColumn()).isEqualTo(1);
+
         Assertions.assertThat(seamNode1.getPreviousNode()).isEqualTo(null);
         Assertions.assertThat(seamNode2.getPreviousNode()).isEqualTo(seamNode1);
         Assertions.assertThat(seamNode3.getPreviousNode()).isEqualTo(seamNode2);
@@ -127,17 +156,19 @@ public class TestImageGraph {
     void testBlueEnergy() {
         ImageGraph.BlueEnergy blueEnergy = new ImageGraph.BlueEnergy();
 
-        ImageGraph.Pixel pixel1 = new ImageGraph.Pixel(Color.BLUE.getRGB());
-        ImageGraph.Pixel pixel2 = new ImageGraph.Pixel(Color.RED.getRGB());
-        ImageGraph.Pixel pixel3 = new ImageGraph.Pixel(new Color(100, 100, 100).getRGB());
-        ImageGraph.Pixel pixel4 = new ImageGraph.Pixel(Color.BLACK.getRGB());
-        ImageGraph.Pixel pixel5 = new ImageGraph.Pixel(Color.WHITE.getRGB());
-
-        Assertions.assertThat(blueEnergy.energyFormula(pixel1)).isEqualTo(0);
-        Assertions.assertThat(blueEnergy.energyFormula(pixel2)).isEqualTo(255);
-        Assertions.assertThat(blueEnergy.energyFormula(pixel3)).isEqualTo(155);
-        Assertions.assertThat(blueEnergy.energyFormula(pixel4)).isEqualTo(255);
-        Assertions.assertThat(blueEnergy.energyFormula(pixel5)).isEqualTo(0);
+        BufferedImage bufferedImage = new BufferedImage(5, 1, BufferedImage.TYPE_INT_RGB);
+        bufferedImage.setRGB(0, 0, Color.BLUE.getRGB());
+        bufferedImage.setRGB(1, 0, Color.RED.getRGB());
+        bufferedImage.setRGB(2, 0, new Color(100, 100, 100).getRGB());
+        bufferedImage.setRGB(3, 0, Color.BLACK.getRGB());
+        bufferedImage.setRGB(4, 0, Color.WHITE.getRGB());
+        ImageGraph imageGraph = new ImageGraph(bufferedImage);
+
+        Assertions.assertThat(blueEnergy.energyFormula(imageGraph, 0, 0)).isEqualTo(0);
+        Assertions.assertThat(blueEnergy.energyFormula(imageGraph, 1, 0)).isEqualTo(255);
+        Assertions.assertThat(blueEnergy.energyFormula(imageGraph, 2, 0)).isEqualTo(155);
+        Assertions.assertThat(blueEnergy.energyFormula(imageGraph, 3, 0)).isEqualTo(255);
+        Assertions.assertThat(blueEnergy.energyFormula(imageGraph, 4, 0)).isEqualTo(0);
     }
 
     @Test
@@ -146,15 +177,15 @@ public class TestImageGraph {
 
         ImageGraph imageGraph = makeImageGraph();
 
-        double A = imageGraph.getHead().getBrightness();
-        double B = imageGraph.getHead().rightNeighbor.getBrightness();
-        double C = imageGraph.getHead().rightNeighbor.rightNeighbor.getBrightness();
-        double D = imageGraph.getHead().child.getBrightness();
-        double E = imageGraph.getHead().child.rightNeighbor.getBrightness();
-        double F = imageGraph.getHead().child.rightNeighbor.rightNeighbor.getBrightness();
-        double G = imageGraph.getHead().child.child.getBrightness();
-        double H = imageGraph.getHead().child.child.rightNeighbor.getBrightness();
-        double I = imageGraph.getHead().child.child.rightNeighbor.rightNeighbor.getBrightness();
+        double A = imageGraph.getBrightness(0, 0);
+        double B = imageGraph.getBrightness(1, 0);
+        double C = imageGraph.getBrightness(2, 0);
+        double D = imageGraph.getBrightness(0, 1);
+        double E = imageGraph.getBrightness(1, 1);
+        double F = imageGraph.getBrightness(2, 1);
+        double G = imageGraph.getBrightness(0, 2);
+        double H = imageGraph.getBrightness(1, 2);
+        double I = imageGraph.getBrightness(2, 2);
 
         double expected1 = Math.sqrt(
                 Math.pow(4*A - (A + 2*D + E), 2)
@@ -169,9 +200,116 @@ public class TestImageGraph {
                         + Math.pow(E + 2*H + I - (4*I), 2)
         );
 
-        Assertions.assertThat(brightnessEnergy.energyFormula(imageGraph.getHead())).isEqualTo(expected1);
-        Assertions.assertThat(brightnessEnergy.energyFormula(imageGraph.getHead().child.rightNeighbor)).isEqualTo(expected2);
-        Assertions.assertThat(brightnessEnergy.energyFormula(imageGraph.getHead().child.rightNeighbor.child.rightNeighbor)).isEqualTo(expected3);
+        Assertions.assertThat(brightnessEnergy.energyFormula(imageGraph, 0, 0)).isEqualTo(expected1);
+        Assertions.assertThat(brightnessEnergy.energyFormula(imageGraph, 1, 1)).isEqualTo(expected2);
+        Assertions.assertThat(brightnessEnergy.energyFormula(imageGraph, 2, 2)).isEqualTo(expected3);
+    }
+
+    @Test
+    void testEnergyRowsMatchEnergyFormula() throws IOException {
+        BufferedImage randomImage = randomImage(67, 5, 3);
+
+        ImageGraph[] imageGraphs = {
+                new ImageGraph(ImageIO.read(new File("src/main/resources/beach.png"))),
+                new ImageGraph(ImageIO.read(new File("src/main/resources/duck.png"))),
+                new ImageGraph(ImageIO.read(new File("src/main/resources/home.png"))),
+                new ImageGraph(ImageIO.read(new File("src/main/resources/snowman.png"))),
+                new ImageGraph(randomImage),
+        };
+
+        // The energies must be exactly the same, not just close, so that findSeam picks the same seams.
+        // With the vector profile, create() returns the vector kernel
+        for (ImageGraph imageGraph : imageGraphs) {
+            float[] expected = energiesOf(imageGraph, new SobelKernel.Scalar(), true);
+            Assertions.assertThat(energiesOf(imageGraph, new SobelKernel.Scalar(), false)).isEqualTo(expected);
+            Assertions.assertThat(energiesOf(imageGraph, SobelKernel.create(), false)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void testBulkLoadMatchesGetRGB() {
+        int[] types = {
+                BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+                BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY,
+                BufferedImage.TYPE_BYTE_INDEXED,
+        };
+        Random random = new Random(9);
+
+        for (int type : types) {
+            BufferedImage image = new BufferedImage(23, 11, type);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    image.setRGB(x, y, random.nextInt());
+                }
+            }
+
+            // A subimage shares the raster of the whole image, so its first pixel isn't at the start of the data
+            for (BufferedImage source : new BufferedImage[] {image, image.getSubimage(3, 2, 17, 8)}) {
+                ImageGraph imageGraph = new ImageGraph(source);
+                for (int y = 0; y < source.getHeight(); y++) {
+                    for (int x = 0; x < source.getWidth(); x++) {
+                        Assertions.assertThat(imageGraph.getRGB(x, y)).isEqualTo(source.getRGB(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testBufferedImagesAfterRemoval() throws IOException {
+        ImageGraph imageGraph = new ImageGraph(ImageIO.read(new File("src/main/resources/duck.png")));
+        BufferedImage copy = imageGraph.toBufferedImage();
+
+        for (int i = 0; i < 3; i++) {
+            imageGraph.removeSeam(imageGraph.findSeam(new ImageGraph.BrightnessEnergy()));
+            BufferedImage reused = imageGraph.toBufferedImage(copy);
+
+            // The narrower image fits in the storage of the previous copy
+            Assertions.assertThat(reused.getRaster().getDataBuffer()).isSameAs(copy.getRaster().getDataBuffer());
+            for (BufferedImage image : new BufferedImage[] {reused, imageGraph.asBufferedImage()}) {
+                Assertions.assertThat(image.getType()).isEqualTo(BufferedImage.TYPE_INT_RGB);
+                Assertions.assertThat(image.getWidth()).isEqualTo(imageGraph.getWidth());
+                for (int y = 0; y < imageGraph.getHeight(); y++) {
+                    for (int x = 0; x < imageGraph.getWidth(); x++) {
+                        Assertions.assertThat(image.getRGB(x, y)).isEqualTo(imageGraph.getRGB(x, y) | 0xFF000000);
+                    }
+                }
+            }
+            copy = reused;
+        }
+    }
+
+    /**
+     * Finds the brightness energy of every pixel in an image graph.
+     * @param imageGraph The image graph to find the energies of.
+     * @param kernel The kernel to find the energies of each row with.
+     * @param onePixelAtATime Whether to use BrightnessEnergy.energyFormula for each pixel instead of the kernel.
+     * @return The energies, row by row.
+     */
+    private float[] energiesOf(ImageGraph imageGraph, SobelKernel kernel, boolean onePixelAtATime) {
+        int width = imageGraph.getWidth();
+        int height = imageGraph.getHeight();
+        float[] energies = new float[width * height];
+
+        if (onePixelAtATime) {
+            ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    energies[y * width + x] = (float) brightnessEnergy.energyFormula(imageGraph, x, y);
+                }
+            }
+            return energies;
+        }
+
+        double[][] rows = new double[height][width];
+        for (int y = 0; y < height; y++) {
+            imageGraph.getBrightnessRow(y, rows[y]);
+        }
+        for (int y = 0; y < height; y++) {
+            kernel.energyRow(y > 0 ? rows[y - 1] : null, rows[y], y < height - 1 ? rows[y + 1] : null,
+                    width, energies, y * width);
+        }
+        return energies;
     }
     // -------------------------------- \\
 
@@ -206,17 +344,20 @@ public class TestImageGraph {
         ImageGraph.SeamNode actualBlueSeam = imageGraph.findSeam(blueEnergy);
 
         ImageGraph.SeamNode expectedBlueSeamTop = new ImageGraph.SeamNode(
-                imageGraph.getHead().rightNeighbor.rightNeighbor,
-                blueEnergy
+                new ImageGraph.Pixel(imageGraph.getRGB(2, 0)),
+                2,
+                blueEnergy.energyFormula(imageGraph, 2, 0)
         );
         ImageGraph.SeamNode expectedBlueSeamMid = new ImageGraph.SeamNode(
-                imageGraph.getHead().child.rightNeighbor.rightNeighbor,
+                new ImageGraph.Pixel(imageGraph.getRGB(2, 1)),
+                2,
                 expectedBlueSeamTop,
                 ImageGraph.SeamNode.PreviousSeamRelationship.STRAIGHT_UP,
                 255
         );
         ImageGraph.SeamNode expectedBlueSeam = new ImageGraph.SeamNode(
-                imageGraph.getHead().child.child.rightNeighbor.rightNeighbor,
+                new ImageGraph.Pixel(imageGraph.getRGB(2, 2)),
+                2,
                 expectedBlueSeamMid,
                 ImageGraph.SeamNode.PreviousSeamRelationship.STRAIGHT_UP,
                 255
@@ -234,17 +375,20 @@ public class TestImageGraph {
         ImageGraph.SeamNode actualBrightSeam = imageGraph.findSeam(brightnessEnergy);
 
         ImageGraph.SeamNode expectedBlueSeamTop = new ImageGraph.SeamNode(
-                imageGraph.getHead(),
-                brightnessEnergy
+                new ImageGraph.Pixel(imageGraph.getRGB(0, 0)),
+                0,
+                brightnessEnergy.energyFormula(imageGraph, 0, 0)
         );
         ImageGraph.SeamNode expectedBlueSeamMid = new ImageGraph.SeamNode(
-                imageGraph.getHead().child.rightNeighbor,
+                new ImageGraph.Pixel(imageGraph.getRGB(1, 1)),
+                1,
                 expectedBlueSeamTop,
                 ImageGraph.SeamNode.PreviousSeamRelationship.DIAGONAL_LEFT,
                 (97.78093429248419 + 203.59273071502332)
         );
         ImageGraph.SeamNode expectedBlueSeam = new ImageGraph.SeamNode(
-                imageGraph.getHead().child.child,
+                new ImageGraph.Pixel(imageGraph.getRGB(0, 2)),
+                0,
                 expectedBlueSeamMid,
                 ImageGraph.SeamNode.PreviousSeamRelationship.DIAGONAL_RIGHT,
                 (97.78093429248419 + 203.59273071502332 + 356.33941373047384)
@@ -253,6 +397,620 @@ public class TestImageGraph {
         Assertions.assertThat(compareSeamNodes(actualBrightSeam, expectedBlueSeam));
     }
 
+    @Test
+    void testFindSeamRepeatedly() {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        ImageGraph imageGraph = new ImageGraph(oldImg);
+
+        // The search buffers are reused, so a second search must not see anything left over from the first
+        ImageGraph.SeamNode firstSeam = imageGraph.findSeam(brightnessEnergy);
+        ImageGraph.SeamNode secondSeam = imageGraph.findSeam(brightnessEnergy);
+        Assertions.assertThat(compareSeamNodes(firstSeam, secondSeam)).isEqualTo(true);
+
+        // A narrower image reuses the same buffers
+        imageGraph.removeSeam(firstSeam);
+        ImageGraph.SeamNode narrowerSeam = imageGraph.findSeam(brightnessEnergy);
+        int rows = 0;
+        for (ImageGraph.SeamNode node = narrowerSeam; node != null; node = node.getPreviousNode()) {
+            Assertions.assertThat(node.getColumn()).isBetween(0, imageGraph.getWidth() - 1);
+            rows++;
+        }
+        Assertions.assertThat(rows).isEqualTo(oldImg.getHeight());
+    }
+
+    @Test
+    void testCachedEnergyAfterEdits() throws IOException {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        ImageGraph.BlueEnergy blueEnergy = new ImageGraph.BlueEnergy();
+        ImageGraph imageGraph = new ImageGraph(ImageIO.read(new File("src/main/resources/duck.png")));
+
+        // Mix every kind of edit, so the cached energies are refreshed in every way
+        for (int i = 0; i < 10; i++) {
+            ImageGraph.SeamNode seam = imageGraph.findSeam(i % 2 == 0 ? brightnessEnergy : blueEnergy);
+            ImageGraph.SeamNode highlightedSeam = imageGraph.highlightSeam(seam, Color.RED);
+            if (i % 5 == 4) {
+                imageGraph.insertSeam(seam, false);
+            } else {
+                imageGraph.removeSeam(highlightedSeam);
+            }
+        }
+        ImageGraph.SeamNode removedSeam = imageGraph.removeSeam(imageGraph.findSeam(brightnessEnergy));
+        imageGraph.insertSeam(removedSeam, true);
+
+        // A graph built from scratch finds every energy again, so it must find the same seams
+        ImageGraph freshGraph = copyOf(imageGraph);
+        Assertions.assertThat(compareSeamNodes(imageGraph.findSeam(brightnessEnergy),
+                freshGraph.findSeam(brightnessEnergy))).isEqualTo(true);
+        Assertions.assertThat(compareSeamNodes(imageGraph.findSeam(blueEnergy),
+                freshGraph.findSeam(blueEnergy))).isEqualTo(true);
+    }
+
+    @Test
+    void testIncrementalSearch() throws IOException {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        ImageGraph.BlueEnergy blueEnergy = new ImageGraph.BlueEnergy();
+        BufferedImage duck = ImageIO.read(new File("src/main/resources/duck.png"));
+        ImageGraph incrementalGraph = new ImageGraph(duck);
+        incrementalGraph.setIncrementalSearch(true);
+        ImageGraph fullGraph = new ImageGraph(duck);
+
+        // Both graphs are edited the same way, so every search must find the same seam
+        for (int i = 0; i < 10; i++) {
+            boolean blue = i % 3 == 0;
+            ImageGraph.SeamNode incrementalSeam = blue
+                    ? incrementalGraph.findSeam(blueEnergy) : incrementalGraph.findSeam(brightnessEnergy);
+            ImageGraph.SeamNode fullSeam = blue ? fullGraph.findSeam(blueEnergy) : fullGraph.findSeam(brightnessEnergy);
+            Assertions.assertThat(compareSeamNodes(incrementalSeam, fullSeam)).isEqualTo(true);
+
+            ImageGraph.SeamNode highlightedSeam = incrementalGraph.highlightSeam(incrementalSeam, Color.RED);
+            fullGraph.highlightSeam(fullSeam, Color.RED);
+            if (i % 4 == 3) {
+                incrementalGraph.insertSeam(incrementalSeam, false);
+                fullGraph.insertSeam(fullSeam, false);
+            } else {
+                incrementalGraph.removeSeam(highlightedSeam);
+                fullGraph.removeSeam(fullSeam);
+            }
+            if (i % 5 == 4) {
+                incrementalGraph.insertSeam(incrementalSeam, true);
+                fullGraph.insertSeam(fullSeam, true);
+            }
+        }
+    }
+
+    @Test
+    void testRemoveSeams() throws IOException {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        BufferedImage home = ImageIO.read(new File("src/main/resources/home.png"));
+        ImageGraph batchGraph = new ImageGraph(home);
+        ImageGraph loopGraph = new ImageGraph(home);
+
+        // The batch must remove the same seams as removing them one at a time
+        SeamBatch batch = batchGraph.carveToWidth(5, brightnessEnergy);
+        Assertions.assertThat(batch.size()).isEqualTo(11);
+        Assertions.assertThat(batchGraph.getWidth()).isEqualTo(5);
+        for (int seam = 0; seam < batch.size(); seam++) {
+            ImageGraph.SeamNode seamNode = loopGraph.findSeam(brightnessEnergy);
+            Assertions.assertThat(batch.getCost(seam)).isEqualTo(seamNode.getCost());
+            ImageGraph.SeamNode currentNode = seamNode;
+            for (int row = batch.getHeight() - 1; row >= 0; row--) {
+                Assertions.assertThat(batch.getColumn(seam, row)).isEqualTo(currentNode.getColumn());
+                Assertions.assertThat(batch.getRGB(seam, row)).isEqualTo(currentNode.getPixel().getRGB());
+                currentNode = currentNode.getPreviousNode();
+            }
+            loopGraph.removeSeam(seamNode);
+        }
+
+        // Undoing the batch puts back the original image, and its energies
+        batchGraph.insertSeams(batch);
+        ImageGraph original = new ImageGraph(home);
+        Assertions.assertThat(batchGraph.getWidth()).isEqualTo(original.getWidth());
+        for (int y = 0; y < original.getHeight(); y++) {
+            for (int x = 0; x < original.getWidth(); x++) {
+                Assertions.assertThat(batchGraph.getRGB(x, y)).isEqualTo(original.getRGB(x, y));
+            }
+        }
+        Assertions.assertThat(compareSeamNodes(batchGraph.findSeam(brightnessEnergy),
+                original.findSeam(brightnessEnergy))).isEqualTo(true);
+
+        // Redoing the batch removes the same seams again, without searching for them
+        batchGraph.removeSeams(batch);
+        Assertions.assertThat(batchGraph.getWidth()).isEqualTo(loopGraph.getWidth());
+        for (int y = 0; y < loopGraph.getHeight(); y++) {
+            for (int x = 0; x < loopGraph.getWidth(); x++) {
+                Assertions.assertThat(batchGraph.getRGB(x, y)).isEqualTo(loopGraph.getRGB(x, y));
+            }
+        }
+        Assertions.assertThat(compareSeamNodes(batchGraph.findSeam(brightnessEnergy),
+                loopGraph.findSeam(brightnessEnergy))).isEqualTo(true);
+    }
+
+    @Test
+    void testEnlarge() throws IOException {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        BufferedImage home = ImageIO.read(new File("src/main/resources/home.png"));
+        ImageGraph graph = new ImageGraph(home);
+        ImageGraph original = new ImageGraph(home);
+
+        // The duplicated seams are the ones a batch would remove, each with an averaged copy to its right
+        SeamBatch found = new ImageGraph(home).carveToWidth(10, brightnessEnergy);
+        SeamBatch inserted = graph.enlargeToWidth(22, brightnessEnergy);
+        Assertions.assertThat(inserted.size()).isEqualTo(6);
+        Assertions.assertThat(graph.getWidth()).isEqualTo(22);
+        for (int y = 0; y < original.getHeight(); y++) {
+            List<Integer> columns = new ArrayList<>();
+            for (int column = 0; column < original.getWidth(); column++) {
+                columns.add(column);
+            }
+            boolean[] duplicated = new boolean[original.getWidth()];
+            for (int seam = 0; seam < found.size(); seam++) {
+                duplicated[columns.remove(found.getColumn(seam, y))] = true;
+            }
+
+            int x = 0;
+            for (int column = 0; column < original.getWidth(); column++) {
+                int color = original.getRGB(column, y);
+                Assertions.assertThat(graph.getRGB(x++, y)).isEqualTo(color);
+                if (duplicated[column]) {
+                    Color left = new Color(color);
+                    Color right = new Color(original.getRGB(Math.min(column + 1, original.getWidth() - 1), y));
+                    Color average = new Color(graph.getRGB(x++, y));
+                    Assertions.assertThat(average.getRed()).isEqualTo((left.getRed() + right.getRed()) / 2);
+                    Assertions.assertThat(average.getGreen()).isEqualTo((left.getGreen() + right.getGreen()) / 2);
+                    Assertions.assertThat(average.getBlue()).isEqualTo((left.getBlue() + right.getBlue()) / 2);
+                }
+            }
+            Assertions.assertThat(x).isEqualTo(22);
+        }
+
+        // The storage grew, and the enlarged image can be carved and enlarged again
+        ImageGraph enlarged = new ImageGraph(graph.toBufferedImage());
+        Assertions.assertThat(compareSeamNodes(graph.findSeam(brightnessEnergy),
+                enlarged.findSeam(brightnessEnergy))).isEqualTo(true);
+        SeamBatch carved = graph.carveToWidth(18, brightnessEnergy);
+        SeamBatch again = graph.enlarge(2, brightnessEnergy);
+        Assertions.assertThat(graph.getWidth()).isEqualTo(20);
+
+        // Removing the inserted seams undoes each enlargement
+        graph.removeSeams(again);
+        graph.insertSeams(carved);
+        graph.removeSeams(inserted);
+        Assertions.assertThat(graph.getWidth()).isEqualTo(original.getWidth());
+        for (int y = 0; y < original.getHeight(); y++) {
+            for (int x = 0; x < original.getWidth(); x++) {
+                Assertions.assertThat(graph.getRGB(x, y)).isEqualTo(original.getRGB(x, y));
+            }
+        }
+        Assertions.assertThat(compareSeamNodes(graph.findSeam(brightnessEnergy),
+                original.findSeam(brightnessEnergy))).isEqualTo(true);
+
+        Assertions.assertThatThrownBy(() -> graph.enlarge(16, brightnessEnergy))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testApproximateSeam() {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        // Noise, except for a band of faint noise that wanders from side to side
+        BufferedImage bufferedImage = new BufferedImage(700, 400, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(23);
+        for (int y = 0; y < bufferedImage.getHeight(); y++) {
+            int smoothStart = 300 + (int) (150 * Math.sin(y / 250.0));
+            for (int x = 0; x < bufferedImage.getWidth(); x++) {
+                boolean smooth = x >= smoothStart && x < smoothStart + 40;
+                bufferedImage.setRGB(x, y, smooth ? 0x808080 + random.nextInt(4) * 0x010101 : random.nextInt());
+            }
+        }
+        ImageGraph graph = new ImageGraph(bufferedImage);
+        Seam exact = graph.findCompactSeam(brightnessEnergy);
+
+        // A wider band finds a seam closer to the cheapest one
+        int[] bandWidths = {0, 2, 8};
+        double[] largestGaps = {1.0, 0.25, 0.1};
+        for (int i = 0; i < bandWidths.length; i++) {
+            int bandWidth = bandWidths[i];
+            Seam approximate = graph.findApproximateSeam(brightnessEnergy, bandWidth);
+            double gap = (approximate.getCost() - exact.getCost()) / exact.getCost();
+            System.out.printf("Band width %d: approximate seam costs %.2f%% more than the exact seam%n",
+                    bandWidth, gap * 100);
+            Assertions.assertThat(gap).isBetween(-1e-9, largestGaps[i]);
+
+            // The seam is connected, and covers the pixels it says it does
+            Assertions.assertThat(approximate.length()).isEqualTo(graph.getHeight());
+            for (int y = 0; y < graph.getHeight(); y++) {
+                Assertions.assertThat(approximate.getRGB(y)).isEqualTo(graph.getRGB(approximate.getColumn(y), y));
+                if (y > 0) {
+                    Assertions.assertThat(Math.abs(approximate.getColumn(y) - approximate.getColumn(y - 1)))
+                            .isLessThanOrEqualTo(1);
+                }
+            }
+        }
+
+        // With a band as wide as the image, the full image is searched
+        Seam full = graph.findApproximateSeam(brightnessEnergy, graph.getWidth());
+        Assertions.assertThat(full.getCost()).isEqualTo(exact.getCost());
+        for (int y = 0; y < graph.getHeight(); y++) {
+            Assertions.assertThat(full.getColumn(y)).isEqualTo(exact.getColumn(y));
+        }
+        Assertions.assertThatThrownBy(() -> graph.findApproximateSeam(brightnessEnergy, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testApproximateSeamAfterEdits() {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        BufferedImage bufferedImage = randomImage(300, 150, 29);
+        ImageGraph graph = new ImageGraph(bufferedImage);
+        // The first search builds the pyramid, and the edits after it update it
+        graph.findApproximateSeam(brightnessEnergy, 2);
+
+        Deque<Seam> removed = new ArrayDeque<>();
+        for (int i = 0; i < 20; i++) {
+            Seam approximate = graph.findApproximateSeam(brightnessEnergy, 2);
+            Assertions.assertThat(approximate.getCost())
+                    .isGreaterThanOrEqualTo(graph.findCompactSeam(brightnessEnergy).getCost() - 1e-9);
+            Seam highlighted = graph.highlightSeam(approximate, Color.RED);
+            removed.push(graph.removeSeam(graph.insertSeam(highlighted, false)));
+            assertApproximateSeamIsExact(graph, brightnessEnergy);
+        }
+        for (int i = 0; i < 10; i++) {
+            graph.insertSeam(removed.pop(), true);
+            assertApproximateSeamIsExact(graph, brightnessEnergy);
+        }
+    }
+
+    /**
+     * Checks that an approximate search with a band as wide as the image finds the cheapest seam.
+     * @param graph The image to search.
+     * @param energyFormula The formula to find the seams with.
+     */
+    private static void assertApproximateSeamIsExact(ImageGraph graph, ImageGraph.EnergyFormula energyFormula) {
+        Seam exact = graph.findCompactSeam(energyFormula);
+        Seam full = graph.findApproximateSeam(energyFormula, graph.getWidth());
+        Assertions.assertThat(full.getCost()).isEqualTo(exact.getCost());
+        for (int y = 0; y < graph.getHeight(); y++) {
+            Assertions.assertThat(full.getColumn(y)).isEqualTo(exact.getColumn(y));
+        }
+    }
+
+    @Test
+    void testRegionSeam() {
+        ImageGraph.BlueEnergy blueEnergy = new ImageGraph.BlueEnergy();
+        BufferedImage bufferedImage = randomImage(90, 40, 24);
+        ImageGraph graph = new ImageGraph(bufferedImage);
+        ImageGraph.SeamNode seam = graph.findSeam(blueEnergy);
+
+        // The whole image, or any range of columns around the cheapest seam, finds the cheapest seam
+        Assertions.assertThat(compareSeamNodes(graph.findSeam(blueEnergy, 0, 90), seam)).isEqualTo(true);
+        int firstColumn = 90;
+        int endColumn = 0;
+        for (ImageGraph.SeamNode node = seam; node != null; node = node.getPreviousNode()) {
+            firstColumn = Math.min(firstColumn, node.getColumn());
+            endColumn = Math.max(endColumn, node.getColumn() + 1);
+        }
+        Assertions.assertThat(compareSeamNodes(graph.findSeam(blueEnergy, firstColumn, endColumn), seam))
+                .isEqualTo(true);
+
+        // A narrower range finds a costlier seam inside it
+        ImageGraph.SeamNode regionSeam = graph.findSeam(blueEnergy, 10, 20);
+        Assertions.assertThat(regionSeam.getCost()).isGreaterThanOrEqualTo(seam.getCost());
+        for (ImageGraph.SeamNode node = regionSeam; node != null; node = node.getPreviousNode()) {
+            Assertions.assertThat(node.getColumn()).isBetween(10, 19);
+        }
+
+        // The seam crosses rows 5 to 14 at one column
+        ImageGraph.SeamNode straightSeam = graph.findSeam(blueEnergy, 10, 20, 5, 15);
+        Assertions.assertThat(straightSeam.getCost()).isGreaterThanOrEqualTo(regionSeam.getCost());
+        int straightColumn = -1;
+        int row = graph.getHeight() - 1;
+        for (ImageGraph.SeamNode node = straightSeam; node != null; node = node.getPreviousNode(), row--) {
+            Assertions.assertThat(node.getColumn()).isBetween(10, 19);
+            if (row >= 5 && row < 15) {
+                if (straightColumn < 0) {
+                    straightColumn = node.getColumn();
+                }
+                Assertions.assertThat(node.getColumn()).isEqualTo(straightColumn);
+            }
+        }
+
+        // Without cached energies, only the energies of the range are found, and the seams are the same
+        ImageGraph coldGraph = new ImageGraph(bufferedImage);
+        Assertions.assertThat(compareSeamNodes(coldGraph.findSeam(blueEnergy, 10, 20), regionSeam)).isEqualTo(true);
+        Assertions.assertThat(compareSeamNodes(coldGraph.findSeam(blueEnergy, 10, 20, 5, 15), straightSeam))
+                .isEqualTo(true);
+        Assertions.assertThat(compareSeamNodes(coldGraph.findSeam(blueEnergy, 0, 90), seam)).isEqualTo(true);
+
+        Assertions.assertThatThrownBy(() -> graph.findSeam(blueEnergy, 20, 20))
+                .isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThatThrownBy(() -> graph.findSeam(blueEnergy, 0, 91))
+                .isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThatThrownBy(() -> graph.findSeam(blueEnergy, 0, 90, 30, 41))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testRegionSeamReadsTheColumnsAroundIt() {
+        // A flat gray range of columns 10 to 19, between white columns 9 and 20
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        BufferedImage bufferedImage = new BufferedImage(30, 12, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < bufferedImage.getHeight(); y++) {
+            for (int x = 0; x < bufferedImage.getWidth(); x++) {
+                bufferedImage.setRGB(x, y, x == 9 || x == 20 ? 0xFFFFFF : 0x808080);
+            }
+        }
+
+        // The edges of the range see the white columns outside it, so the seam keeps off them
+        ImageGraph coldGraph = new ImageGraph(bufferedImage);
+        ImageGraph.SeamNode coldSeam = coldGraph.findSeam(brightnessEnergy, 10, 20);
+        Assertions.assertThat(coldSeam.getCost()).isEqualTo(0);
+        for (ImageGraph.SeamNode node = coldSeam; node != null; node = node.getPreviousNode()) {
+            Assertions.assertThat(node.getColumn()).isEqualTo(11);
+        }
+
+        // The same seam the cached energies give
+        ImageGraph graph = new ImageGraph(bufferedImage);
+        graph.findSeam(brightnessEnergy);
+        Assertions.assertThat(compareSeamNodes(graph.findSeam(brightnessEnergy, 10, 20), coldSeam)).isEqualTo(true);
+    }
+
+    @Test
+    void testFindSeams() {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        BufferedImage bufferedImage = randomImage(60, 30, 25);
+        ImageGraph graph = new ImageGraph(bufferedImage);
+        Seam cheapest = graph.findCompactSeam(brightnessEnergy);
+
+        // Every end column gives one seam, cheapest first
+        List<Seam> seams = graph.findSeams(100, brightnessEnergy);
+        Assertions.assertThat(seams).hasSize(60);
+        Assertions.assertThat(seams.get(0).getCost()).isEqualTo(cheapest.getCost());
+        Set<Integer> endColumns = new HashSet<>();
+        for (int i = 0; i < seams.size(); i++) {
+            Seam seam = seams.get(i);
+            Assertions.assertThat(endColumns.add(seam.getColumn(29))).isTrue();
+            if (i > 0) {
+                Assertions.assertThat(seam.getCost()).isGreaterThanOrEqualTo(seams.get(i - 1).getCost());
+            }
+        }
+
+        // Disjoint seams never share a pixel
+        List<Seam> disjointSeams = graph.findSeams(8, brightnessEnergy, true);
+        Assertions.assertThat(disjointSeams).isNotEmpty().hasSizeLessThanOrEqualTo(8);
+        Assertions.assertThat(disjointSeams.get(0).getCost()).isEqualTo(cheapest.getCost());
+        Set<Integer> covered = new HashSet<>();
+        for (Seam seam : disjointSeams) {
+            for (int y = 0; y < seam.length(); y++) {
+                Assertions.assertThat(covered.add(y * 60 + seam.getColumn(y))).isTrue();
+                Assertions.assertThat(seam.getRGB(y)).isEqualTo(graph.getRGB(seam.getColumn(y), y));
+            }
+        }
+
+        // They are the seams a check of every pixel picks, going through all the seams cheapest first
+        List<Seam> expectedSeams = new ArrayList<>();
+        Set<Integer> expectedCovered = new HashSet<>();
+        for (Seam seam : seams) {
+            Set<Integer> pixels = new HashSet<>();
+            for (int y = 0; y < seam.length(); y++) {
+                pixels.add(y * 60 + seam.getColumn(y));
+            }
+            if (expectedSeams.size() < 8 && pixels.stream().noneMatch(expectedCovered::contains)) {
+                expectedSeams.add(seam);
+                expectedCovered.addAll(pixels);
+            }
+        }
+        Assertions.assertThat(disjointSeams).hasSameSizeAs(expectedSeams);
+        for (int i = 0; i < disjointSeams.size(); i++) {
+            for (int y = 0; y < 30; y++) {
+                Assertions.assertThat(disjointSeams.get(i).getColumn(y)).isEqualTo(expectedSeams.get(i).getColumn(y));
+            }
+        }
+
+        Assertions.assertThatThrownBy(() -> graph.findSeams(0, brightnessEnergy))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testFindSeamsIncrementally() {
+        // A flat image, where every seam costs the same until seams are removed
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        BufferedImage bufferedImage = new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(30);
+        for (int y = 0; y < bufferedImage.getHeight(); y++) {
+            for (int x = 0; x < bufferedImage.getWidth(); x++) {
+                bufferedImage.setRGB(x, y, x % 10 == 3 ? random.nextInt() : 0x808080);
+            }
+        }
+        ImageGraph graph = new ImageGraph(bufferedImage);
+        graph.setIncrementalSearch(true);
+
+        // The first seam is always the one findCompactSeam finds, ties included
+        for (int i = 0; i < 5; i++) {
+            Seam cheapest = graph.findCompactSeam(brightnessEnergy);
+            for (boolean disjoint : new boolean[] {false, true}) {
+                Seam first = graph.findSeams(4, brightnessEnergy, disjoint).get(0);
+                Assertions.assertThat(first.getCost()).isEqualTo(cheapest.getCost());
+                for (int y = 0; y < graph.getHeight(); y++) {
+                    Assertions.assertThat(first.getColumn(y)).isEqualTo(cheapest.getColumn(y));
+                }
+            }
+            graph.removeSeam(cheapest);
+        }
+    }
+
+    @Test
+    void testHorizontalSeams() {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        BufferedImage image = new BufferedImage(13, 9, BufferedImage.TYPE_INT_RGB);
+        BufferedImage transposedImage = new BufferedImage(9, 13, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(4);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb = random.nextInt();
+                image.setRGB(x, y, rgb);
+                transposedImage.setRGB(y, x, rgb);
+            }
+        }
+        ImageGraph imageGraph = new ImageGraph(image);
+        imageGraph.setIncrementalSearch(true);
+        ImageGraph transposedGraph = new ImageGraph(transposedImage);
+
+        // A horizontal seam of one graph is a vertical seam of the other, so every edit must match
+        for (int i = 0; i < 8; i++) {
+            boolean horizontal = i % 2 == 0;
+            ImageGraph.SeamNode seam = horizontal
+                    ? imageGraph.findHorizontalSeam(brightnessEnergy) : imageGraph.findSeam(brightnessEnergy);
+            ImageGraph.SeamNode transposedSeam = horizontal
+                    ? transposedGraph.findSeam(brightnessEnergy) : transposedGraph.findHorizontalSeam(brightnessEnergy);
+            Assertions.assertThat(compareSeamNodes(seam, transposedSeam)).isEqualTo(true);
+
+            if (i % 3 == 2) {
+                if (horizontal) {
+                    imageGraph.highlightHorizontalSeam(seam, Color.RED);
+                    imageGraph.insertHorizontalSeam(seam, false);
+                    transposedGraph.highlightSeam(transposedSeam, Color.RED);
+                    transposedGraph.insertSeam(transposedSeam, false);
+                } else {
+                    imageGraph.highlightSeam(seam, Color.RED);
+                    imageGraph.insertSeam(seam, false);
+                    transposedGraph.highlightHorizontalSeam(transposedSeam, Color.RED);
+                    transposedGraph.insertHorizontalSeam(transposedSeam, false);
+                }
+            } else if (horizontal) {
+                imageGraph.removeHorizontalSeam(seam);
+                transposedGraph.removeSeam(transposedSeam);
+                if (i == 4) {
+                    imageGraph.insertHorizontalSeam(seam, true);
+                    transposedGraph.insertSeam(transposedSeam, true);
+                }
+            } else {
+                imageGraph.removeSeam(seam);
+                transposedGraph.removeHorizontalSeam(transposedSeam);
+            }
+
+            Assertions.assertThat(imageGraph.getWidth()).isEqualTo(transposedGraph.getHeight());
+            Assertions.assertThat(imageGraph.getHeight()).isEqualTo(transposedGraph.getWidth());
+            for (int y = 0; y < imageGraph.getHeight(); y++) {
+                for (int x = 0; x < imageGraph.getWidth(); x++) {
+                    Assertions.assertThat(imageGraph.getRGB(x, y)).isEqualTo(transposedGraph.getRGB(y, x));
+                }
+            }
+
+            // The cached energies and seam costs must still be right
+            ImageGraph freshGraph = copyOf(imageGraph);
+            Assertions.assertThat(compareSeamNodes(imageGraph.findSeam(brightnessEnergy),
+                    freshGraph.findSeam(brightnessEnergy))).isEqualTo(true);
+            Assertions.assertThat(compareSeamNodes(imageGraph.findHorizontalSeam(brightnessEnergy),
+                    freshGraph.findHorizontalSeam(brightnessEnergy))).isEqualTo(true);
+        }
+        Assertions.assertThat(imageGraph.getWidth()).isEqualTo(10);
+        Assertions.assertThat(imageGraph.getHeight()).isEqualTo(7);
+    }
+
+    @Test
+    void testCompactSeams() throws IOException {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        BufferedImage snowman = ImageIO.read(new File("src/main/resources/snowman.png"));
+        ImageGraph compactGraph = new ImageGraph(snowman);
+        ImageGraph nodeGraph = new ImageGraph(snowman);
+
+        // Both graphs are edited the same way, one with compact seams and one with chains of nodes
+        for (int i = 0; i < 6; i++) {
+            boolean horizontal = i % 3 == 1;
+            Seam seam = horizontal ? compactGraph.findCompactHorizontalSeam(brightnessEnergy)
+                    : compactGraph.findCompactSeam(brightnessEnergy);
+            ImageGraph.SeamNode seamNode = horizontal ? nodeGraph.findHorizontalSeam(brightnessEnergy)
+                    : nodeGraph.findSeam(brightnessEnergy);
+            Assertions.assertThat(seam.isHorizontal()).isEqualTo(horizontal);
+            Assertions.assertThat(seam.getCost()).isEqualTo(seamNode.getCost());
+            ImageGraph.SeamNode currentNode = seamNode;
+            for (int line = seam.length() - 1; line >= 0; line--) {
+                Assertions.assertThat(seam.getColumn(line)).isEqualTo(currentNode.getColumn());
+                Assertions.assertThat(seam.getRGB(line)).isEqualTo(currentNode.getPixel().getRGB());
+                currentNode = currentNode.getPreviousNode();
+            }
+            Assertions.assertThat(currentNode).isNull();
+
+            // Delete the highlighted seam, and put it back every other time
+            compactGraph.highlightSeam(seam, Color.RED);
+            ImageGraph.SeamNode highlightedNode = horizontal
+                    ? nodeGraph.highlightHorizontalSeam(seamNode, Color.RED) : nodeGraph.highlightSeam(seamNode, Color.RED);
+            compactGraph.removeSeam(seam);
+            if (horizontal) {
+                nodeGraph.removeHorizontalSeam(highlightedNode);
+            } else {
+                nodeGraph.removeSeam(highlightedNode);
+            }
+            if (i % 2 == 1) {
+                compactGraph.insertSeam(seam, true);
+                if (horizontal) {
+                    nodeGraph.insertHorizontalSeam(seamNode, true);
+                } else {
+                    nodeGraph.insertSeam(seamNode, true);
+                }
+            }
+
+            Assertions.assertThat(compactGraph.getWidth()).isEqualTo(nodeGraph.getWidth());
+            Assertions.assertThat(compactGraph.getHeight()).isEqualTo(nodeGraph.getHeight());
+            for (int y = 0; y < compactGraph.getHeight(); y++) {
+                for (int x = 0; x < compactGraph.getWidth(); x++) {
+                    Assertions.assertThat(compactGraph.getRGB(x, y)).isEqualTo(nodeGraph.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testParallelSearch() {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+
+        // Wide enough to be split into chunks of columns
+        BufferedImage wideImage = randomImage(1200, 20, 2);
+        ImageGraph parallelGraph = new ImageGraph(wideImage);
+        parallelGraph.setParallelism(4);
+        ImageGraph sequentialGraph = new ImageGraph(wideImage);
+
+        for (int i = 0; i < 5; i++) {
+            ImageGraph.SeamNode parallelSeam = parallelGraph.findSeam(brightnessEnergy);
+            ImageGraph.SeamNode sequentialSeam = sequentialGraph.findSeam(brightnessEnergy);
+            Assertions.assertThat(compareSeamNodes(parallelSeam, sequentialSeam)).isEqualTo(true);
+
+            parallelGraph.removeSeam(parallelSeam);
+            sequentialGraph.removeSeam(sequentialSeam);
+        }
+        parallelGraph.setParallelism(1);
+
+        // Tall enough to split the columns of a horizontal search into chunks of rows
+        BufferedImage tallImage = randomImage(20, 1200, 3);
+        parallelGraph = new ImageGraph(tallImage);
+        parallelGraph.setParallelism(4);
+        sequentialGraph = new ImageGraph(tallImage);
+        for (int i = 0; i < 3; i++) {
+            ImageGraph.SeamNode parallelSeam = parallelGraph.findHorizontalSeam(brightnessEnergy);
+            ImageGraph.SeamNode sequentialSeam = sequentialGraph.findHorizontalSeam(brightnessEnergy);
+            Assertions.assertThat(compareSeamNodes(parallelSeam, sequentialSeam)).isEqualTo(true);
+
+            parallelGraph.removeHorizontalSeam(parallelSeam);
+            sequentialGraph.removeHorizontalSeam(sequentialSeam);
+        }
+        parallelGraph.setParallelism(1);
+    }
+
+    /**
+     * Builds a new image graph with the same pixels as the given one.
+     * @param imageGraph The image graph to copy.
+     * @return The new image graph.
+     */
+    private ImageGraph copyOf(ImageGraph imageGraph) {
+        BufferedImage bufferedImage = new BufferedImage(
+                imageGraph.getWidth(), imageGraph.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < imageGraph.getHeight(); y++) {
+            for (int x = 0; x < imageGraph.getWidth(); x++) {
+                bufferedImage.setRGB(x, y, imageGraph.getRGB(x, y));
+            }
+        }
+        return new ImageGraph(bufferedImage);
+    }
+
     /**
      * Compares two SeamNodes to see if they are equivalent.
      * @param a The first seam node to compare.
@@ -268,7 +1026,8 @@ public class TestImageGraph {
             return true;
         }
 
-        return a.getPixel() == b.getPixel() &&
+        return a.getColumn() == b.getColumn() &&
+                a.getPixel().getRGB() == b.getPixel().getRGB() &&
                 a.getCost() == b.getCost() &&
                 a.getRelationship() == b.getRelationship() &&
                 compareSeamNodes(a.getPreviousNode(), b.getPreviousNode());
@@ -281,17 +1040,20 @@ public class TestImageGraph {
         ImageGraph imageGraph = makeImageGraph();
 
         ImageGraph.SeamNode ourSeam2 = new ImageGraph.SeamNode(
-                imageGraph.getHead().rightNeighbor.rightNeighbor,
-                blueEnergy
+                new ImageGraph.Pixel(imageGraph.getRGB(2, 0)),
+                2,
+                blueEnergy.energyFormula(imageGraph, 2, 0)
         );
         ImageGraph.SeamNode ourSeam1 = new ImageGraph.SeamNode(
-                imageGraph.getHead().child.rightNeighbor.rightNeighbor,
+                new ImageGraph.Pixel(imageGraph.getRGB(2, 1)),
+                2,
                 ourSeam2,
                 ImageGraph.SeamNode.PreviousSeamRelationship.STRAIGHT_UP,
                 255
         );
         ImageGraph.SeamNode ourSeam = new ImageGraph.SeamNode(
-                imageGraph.getHead().child.child.rightNeighbor.rightNeighbor,
+                new ImageGraph.Pixel(imageGraph.getRGB(2, 2)),
+                2,
                 ourSeam1,
                 ImageGraph.SeamNode.PreviousSeamRelationship.STRAIGHT_UP,
                 255
@@ -300,13 +1062,16 @@ public class TestImageGraph {
         ImageGraph.SeamNode actualSeam = imageGraph.highlightSeam(ourSeam, Color.DARK_GRAY);
 
         // go through the graph and make sure that the seam is inserted
-        Assertions.assertThat(imageGraph.getHead().rightNeighbor.rightNeighbor.getRGB()).isEqualTo(Color.DARK_GRAY.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.rightNeighbor.rightNeighbor.getRGB()).isEqualTo(Color.DARK_GRAY.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.child.rightNeighbor.rightNeighbor.getRGB()).isEqualTo(Color.DARK_GRAY.getRGB());
-
-        Assertions.assertThat(actualSeam.getPixel().leftNeighbor.leftNeighbor.equals(imageGraph.getHead().child.child)).isEqualTo(true);
-        Assertions.assertThat(actualSeam.getPreviousNode().getPixel().leftNeighbor.leftNeighbor.equals(imageGraph.getHead().child)).isEqualTo(true);
-        Assertions.assertThat(actualSeam.getPreviousNode().getPreviousNode().getPixel().leftNeighbor.leftNeighbor.equals(imageGraph.getHead())).isEqualTo(true);
+        Assertions.assertThat(imageGraph.getRGB(2, 0)).isEqualTo(Color.DARK_GRAY.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(2, 1)).isEqualTo(Color.DARK_GRAY.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(2, 2)).isEqualTo(Color.DARK_GRAY.getRGB());
+
+        Assertions.assertThat(actualSeam.getColumn()).isEqualTo(2);
+        Assertions.assertThat(actualSeam.getPixel().getRGB()).isEqualTo(Color.DARK_GRAY.getRGB());
+        Assertions.assertThat(actualSeam.getPreviousNode().getColumn()).isEqualTo(2);
+        Assertions.assertThat(actualSeam.getPreviousNode().getPixel().getRGB()).isEqualTo(Color.DARK_GRAY.getRGB());
+        Assertions.assertThat(actualSeam.getPreviousNode().getPreviousNode().getColumn()).isEqualTo(2);
+        Assertions.assertThat(actualSeam.getPreviousNode().getPreviousNode().getPreviousNode()).isEqualTo(null);
     }
 
     @Test
@@ -321,16 +1086,16 @@ public class TestImageGraph {
         Assertions.assertThat(imageGraph.getWidth()).isEqualTo(2);
 
         // go through the graph and make sure that the seam is inserted
-        Assertions.assertThat(imageGraph.getHead().rightNeighbor.rightNeighbor).isEqualTo(null);
-        Assertions.assertThat(imageGraph.getHead().child.rightNeighbor.rightNeighbor).isEqualTo(null);
-        Assertions.assertThat(imageGraph.getHead().child.child.rightNeighbor.rightNeighbor).isEqualTo(null);
-
-        Assertions.assertThat(imageGraph.getHead().getRGB()).isEqualTo(Color.ORANGE.getRGB());
-        Assertions.assertThat(imageGraph.getHead().rightNeighbor.getRGB()).isEqualTo(Color.YELLOW.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.getRGB()).isEqualTo(Color.GREEN.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.rightNeighbor.getRGB()).isEqualTo(Color.BLUE.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.child.getRGB()).isEqualTo(Color.PINK.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.child.rightNeighbor.getRGB()).isEqualTo(Color.CYAN.getRGB());
+        Assertions.assertThatThrownBy(() -> imageGraph.getRGB(2, 0)).isInstanceOf(IndexOutOfBoundsException.class);
+        Assertions.assertThatThrownBy(() -> imageGraph.getRGB(2, 1)).isInstanceOf(IndexOutOfBoundsException.class);
+        Assertions.assertThatThrownBy(() -> imageGraph.getRGB(2, 2)).isInstanceOf(IndexOutOfBoundsException.class);
+
+        Assertions.assertThat(imageGraph.getRGB(0, 0)).isEqualTo(Color.ORANGE.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(1, 0)).isEqualTo(Color.YELLOW.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(0, 1)).isEqualTo(Color.GREEN.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(1, 1)).isEqualTo(Color.BLUE.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(0, 2)).isEqualTo(Color.PINK.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(1, 2)).isEqualTo(Color.CYAN.getRGB());
     }
 
     @Test
@@ -345,15 +1110,15 @@ public class TestImageGraph {
         imageGraph.insertSeam(originalSeam, false);
 
         Assertions.assertThat(imageGraph.getWidth()).isEqualTo(3);
-        Assertions.assertThat(imageGraph.getHead().getRGB()).isEqualTo(Color.RED.getRGB());
-        Assertions.assertThat(imageGraph.getHead().rightNeighbor.getRGB()).isEqualTo(Color.ORANGE.getRGB());
-        Assertions.assertThat(imageGraph.getHead().rightNeighbor.rightNeighbor.getRGB()).isEqualTo(Color.YELLOW.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.getRGB()).isEqualTo(Color.GREEN.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.rightNeighbor.getRGB()).isEqualTo(Color.BLACK.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.rightNeighbor.rightNeighbor.getRGB()).isEqualTo(Color.BLUE.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.child.getRGB()).isEqualTo(Color.MAGENTA.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.child.rightNeighbor.getRGB()).isEqualTo(Color.PINK.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.child.rightNeighbor.rightNeighbor.getRGB()).isEqualTo(Color.CYAN.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(0, 0)).isEqualTo(Color.RED.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(1, 0)).isEqualTo(Color.ORANGE.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(2, 0)).isEqualTo(Color.YELLOW.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(0, 1)).isEqualTo(Color.GREEN.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(1, 1)).isEqualTo(Color.BLACK.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(2, 1)).isEqualTo(Color.BLUE.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(0, 2)).isEqualTo(Color.MAGENTA.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(1, 2)).isEqualTo(Color.PINK.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(2, 2)).isEqualTo(Color.CYAN.getRGB());
 
 
         imageGraph.removeSeam(originalSeam);
@@ -363,14 +1128,14 @@ public class TestImageGraph {
         imageGraph.insertSeam(originalSeam, true);
 
         Assertions.assertThat(imageGraph.getWidth()).isEqualTo(3);
-        Assertions.assertThat(imageGraph.getHead().getRGB()).isEqualTo(Color.RED.getRGB());
-        Assertions.assertThat(imageGraph.getHead().rightNeighbor.getRGB()).isEqualTo(Color.ORANGE.getRGB());
-        Assertions.assertThat(imageGraph.getHead().rightNeighbor.rightNeighbor.getRGB()).isEqualTo(Color.YELLOW.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.getRGB()).isEqualTo(Color.GREEN.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.rightNeighbor.getRGB()).isEqualTo(Color.BLACK.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.rightNeighbor.rightNeighbor.getRGB()).isEqualTo(Color.BLUE.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.child.getRGB()).isEqualTo(Color.MAGENTA.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.child.rightNeighbor.getRGB()).isEqualTo(Color.PINK.getRGB());
-        Assertions.assertThat(imageGraph.getHead().child.child.rightNeighbor.rightNeighbor.getRGB()).isEqualTo(Color.CYAN.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(0, 0)).isEqualTo(Color.RED.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(1, 0)).isEqualTo(Color.ORANGE.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(2, 0)).isEqualTo(Color.YELLOW.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(0, 1)).isEqualTo(Color.GREEN.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(1, 1)).isEqualTo(Color.BLACK.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(2, 1)).isEqualTo(Color.BLUE.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(0, 2)).isEqualTo(Color.MAGENTA.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(1, 2)).isEqualTo(Color.PINK.getRGB());
+        Assertions.assertThat(imageGraph.getRGB(2, 2)).isEqualTo(Color.CYAN.getRGB());
     }
 }
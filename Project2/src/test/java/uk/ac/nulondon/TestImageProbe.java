@@ -0,0 +1,51 @@
+package uk.ac.nulondon;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class TestImageProbe {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testProbeMatchesDecodedImage() throws IOException {
+        for (String name : new String[]{"beach", "duck", "home", "snowman"}) {
+            File file = new File("src/main/resources/" + name + ".png");
+            ImageProbe probe = ImageProbe.probe(file);
+            BufferedImage image = ImageIO.read(file);
+
+            Assertions.assertThat(probe.formatName()).isEqualToIgnoringCase("png");
+            Assertions.assertThat(probe.width()).isEqualTo(image.getWidth());
+            Assertions.assertThat(probe.height()).isEqualTo(image.getHeight());
+            Assertions.assertThat(probe.imageType()).isEqualTo(image.getType());
+            Assertions.assertThat(probe.estimateDecodedBytes())
+                    .isEqualTo((long) image.getWidth() * image.getHeight() * 4);
+            Assertions.assertThat(ImageProbe.probe(Files.readAllBytes(file.toPath()))).isEqualTo(probe);
+        }
+
+        BufferedImage rgb = new BufferedImage(300, 200, BufferedImage.TYPE_3BYTE_BGR);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(rgb, "png", bytes);
+        ImageProbe probe = ImageProbe.probe(bytes.toByteArray());
+        Assertions.assertThat(probe.estimateDecodedBytes()).isEqualTo(300 * 200 * 3);
+        Assertions.assertThat(probe.estimateCarvingBytes())
+                .isEqualTo(300 * 200 * 3 + ImageGraph.estimateCarvingBytes(300, 200));
+    }
+
+    @Test
+    void testNotAnImage() throws IOException {
+        File text = new File(directory, "text.png");
+        Files.writeString(text.toPath(), "not an image");
+        Assertions.assertThatThrownBy(() -> ImageProbe.probe(text)).isInstanceOf(IOException.class);
+        Assertions.assertThatThrownBy(() -> ImageProbe.probe(new File(directory, "missing.png")))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,66 @@
+package uk.ac.nulondon;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public class TestSeamSpeculator {
+
+    private static void assertSameSeam(Seam actual, Seam expected) {
+        Assertions.assertThat(actual.getCost()).isEqualTo(expected.getCost());
+        Assertions.assertThat(actual.length()).isEqualTo(expected.length());
+        for (int line = 0; line < expected.length(); line++) {
+            Assertions.assertThat(actual.getColumn(line)).isEqualTo(expected.getColumn(line));
+            Assertions.assertThat(actual.getRGB(line)).isEqualTo(expected.getRGB(line));
+        }
+    }
+
+    @Test
+    void testConfirmedSeamsMatchTheImage() throws IOException {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        ImageGraph.BlueEnergy blueEnergy = new ImageGraph.BlueEnergy();
+        ImageGraph graph = new ImageGraph(ImageIO.read(new File("src/main/resources/home.png")));
+        SeamSpeculator speculator = new SeamSpeculator(List.of(brightnessEnergy, blueEnergy));
+
+        for (int i = 0; i < 4; i++) {
+            // Highlight a seam, speculate, then delete it, like ImageHandler does
+            Seam seam = graph.findCompactSeam(i % 2 == 0 ? brightnessEnergy : blueEnergy);
+            graph.highlightSeam(seam, Color.RED);
+            speculator.speculate(graph, seam);
+            graph.removeSeam(seam);
+            speculator.confirm(seam);
+
+            ImageGraph.EnergyFormula next = i % 2 == 0 ? blueEnergy : brightnessEnergy;
+            Seam speculated = speculator.take(next);
+            Assertions.assertThat(speculated).isNotNull();
+            assertSameSeam(speculated, graph.findCompactSeam(next));
+
+            // Taking a seam throws the other one away, since an edit follows
+            Assertions.assertThat(speculator.take(next == blueEnergy ? brightnessEnergy : blueEnergy)).isNull();
+        }
+    }
+
+    @Test
+    void testUnconfirmedSeamsAreThrownAway() throws IOException {
+        ImageGraph.BrightnessEnergy brightnessEnergy = new ImageGraph.BrightnessEnergy();
+        ImageGraph graph = new ImageGraph(ImageIO.read(new File("src/main/resources/duck.png")));
+        SeamSpeculator speculator = new SeamSpeculator(List.of(brightnessEnergy));
+
+        // The highlight was cancelled rather than deleted
+        Seam seam = graph.findCompactSeam(brightnessEnergy);
+        speculator.speculate(graph, seam);
+        speculator.cancel();
+        Assertions.assertThat(speculator.take(brightnessEnergy)).isNull();
+
+        // A different seam was deleted than the one the speculation assumed
+        speculator.speculate(graph, seam);
+        Seam other = graph.findCompactHorizontalSeam(brightnessEnergy);
+        graph.removeSeam(other);
+        speculator.confirm(other);
+        Assertions.assertThat(speculator.take(brightnessEnergy)).isNull();
+    }
+}
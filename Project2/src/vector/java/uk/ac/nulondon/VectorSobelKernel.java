@@ -0,0 +1,63 @@
+package uk.ac.nulondon;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A kernel that finds the energy of as many pixels at a time as fit in the CPU's vector registers.
+ * Needs the jdk.incubator.vector module, so it is only built by the vector profile; create kernels through
+ * SobelKernel.create(), which loads this class by name only when the module is there.
+ */
+final class VectorSobelKernel implements SobelKernel {
+
+    // The widest vector of doubles this CPU handles well
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    // A vector of as many floats, which the energies are rounded to before they are stored
+    private static final VectorSpecies<Float> FLOAT_SPECIES =
+            VectorSpecies.of(float.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+
+    @Override
+    public void energyRow(double[] above, double[] row, double[] below, int width, float[] energies, int offset) {
+        // The first and last columns have missing neighbors, so they are found one at a time.
+        // Every column in between has both neighbors, and can be loaded straight from the rows.
+        int x = 0;
+        if (width > 0) {
+            energies[offset] = (float) SobelKernel.Scalar.energy(above, row, below, width, 0);
+            x = 1;
+        }
+
+        for (; x + SPECIES.length() < width; x += SPECIES.length()) {
+            DoubleVector current = DoubleVector.fromArray(SPECIES, row, x);
+            DoubleVector d = DoubleVector.fromArray(SPECIES, row, x - 1);
+            DoubleVector f = DoubleVector.fromArray(SPECIES, row, x + 1);
+
+            // A missing row counts as having the brightness of the current pixels
+            DoubleVector a = above == null ? current : DoubleVector.fromArray(SPECIES, above, x - 1);
+            DoubleVector b = above == null ? current : DoubleVector.fromArray(SPECIES, above, x);
+            DoubleVector c = above == null ? current : DoubleVector.fromArray(SPECIES, above, x + 1);
+            DoubleVector g = below == null ? current : DoubleVector.fromArray(SPECIES, below, x - 1);
+            DoubleVector h = below == null ? current : DoubleVector.fromArray(SPECIES, below, x);
+            DoubleVector i = below == null ? current : DoubleVector.fromArray(SPECIES, below, x + 1);
+
+            // a + 2 * d + g - (c + 2 * f + i), added up in the same order as the scalar kernel
+            DoubleVector horizontalEnergy = a.add(d.mul(2)).add(g).sub(c.add(f.mul(2)).add(i));
+            // a + 2 * b + c - (g + 2 * h + i)
+            DoubleVector verticalEnergy = a.add(b.mul(2)).add(c).sub(g.add(h.mul(2)).add(i));
+
+            DoubleVector energy = horizontalEnergy.mul(horizontalEnergy)
+                    .add(verticalEnergy.mul(verticalEnergy))
+                    .sqrt();
+            ((FloatVector) energy.convertShape(VectorOperators.D2F, FLOAT_SPECIES, 0))
+                    .intoArray(energies, offset + x);
+        }
+
+        // The columns that didn't fill a whole vector, and the last column
+        for (; x < width; x++) {
+            energies[offset + x] = (float) SobelKernel.Scalar.energy(above, row, below, width, x);
+        }
+    }
+}